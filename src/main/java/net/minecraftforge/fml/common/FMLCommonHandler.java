@@ -285,7 +285,10 @@ public class FMLCommonHandler
 
     public void onPostServerTick()
     {
-        bus().post(new TickEvent.ServerTickEvent(Phase.END));
+        if (bus().hasListeners(TickEvent.ServerTickEvent.class))
+        {
+            bus().post(new TickEvent.ServerTickEvent(Phase.END));
+        }
     }
 
     /**
@@ -293,12 +296,18 @@ public class FMLCommonHandler
      */
     public void onPostWorldTick(World world)
     {
-        bus().post(new TickEvent.WorldTickEvent(Side.SERVER, Phase.END, world));
+        if (bus().hasListeners(TickEvent.WorldTickEvent.class))
+        {
+            bus().post(new TickEvent.WorldTickEvent(Side.SERVER, Phase.END, world));
+        }
     }
 
     public void onPreServerTick()
     {
-        bus().post(new TickEvent.ServerTickEvent(Phase.START));
+        if (bus().hasListeners(TickEvent.ServerTickEvent.class))
+        {
+            bus().post(new TickEvent.ServerTickEvent(Phase.START));
+        }
     }
 
     /**
@@ -306,7 +315,10 @@ public class FMLCommonHandler
      */
     public void onPreWorldTick(World world)
     {
-        bus().post(new TickEvent.WorldTickEvent(Side.SERVER, Phase.START, world));
+        if (bus().hasListeners(TickEvent.WorldTickEvent.class))
+        {
+            bus().post(new TickEvent.WorldTickEvent(Side.SERVER, Phase.START, world));
+        }
     }
 
     public boolean handleServerAboutToStart(MinecraftServer server)
@@ -363,32 +375,50 @@ public class FMLCommonHandler
 
     public void onPreClientTick()
     {
-        bus().post(new TickEvent.ClientTickEvent(Phase.START));
+        if (bus().hasListeners(TickEvent.ClientTickEvent.class))
+        {
+            bus().post(new TickEvent.ClientTickEvent(Phase.START));
+        }
     }
 
     public void onPostClientTick()
     {
-        bus().post(new TickEvent.ClientTickEvent(Phase.END));
+        if (bus().hasListeners(TickEvent.ClientTickEvent.class))
+        {
+            bus().post(new TickEvent.ClientTickEvent(Phase.END));
+        }
     }
 
     public void onRenderTickStart(float timer)
     {
-        bus().post(new TickEvent.RenderTickEvent(Phase.START, timer));
+        if (bus().hasListeners(TickEvent.RenderTickEvent.class))
+        {
+            bus().post(new TickEvent.RenderTickEvent(Phase.START, timer));
+        }
     }
 
     public void onRenderTickEnd(float timer)
     {
-        bus().post(new TickEvent.RenderTickEvent(Phase.END, timer));
+        if (bus().hasListeners(TickEvent.RenderTickEvent.class))
+        {
+            bus().post(new TickEvent.RenderTickEvent(Phase.END, timer));
+        }
     }
 
     public void onPlayerPreTick(EntityPlayer player)
     {
-        bus().post(new TickEvent.PlayerTickEvent(Phase.START, player));
+        if (bus().hasListeners(TickEvent.PlayerTickEvent.class))
+        {
+            bus().post(new TickEvent.PlayerTickEvent(Phase.START, player));
+        }
     }
 
     public void onPlayerPostTick(EntityPlayer player)
     {
-        bus().post(new TickEvent.PlayerTickEvent(Phase.END, player));
+        if (bus().hasListeners(TickEvent.PlayerTickEvent.class))
+        {
+            bus().post(new TickEvent.PlayerTickEvent(Phase.END, player));
+        }
     }
 
     public void registerCrashCallable(ICrashCallable callable)
@@ -573,47 +603,74 @@ public class FMLCommonHandler
 
     public void fireMouseInput()
     {
-        bus().post(new InputEvent.MouseInputEvent());
+        if (bus().hasListeners(InputEvent.MouseInputEvent.class))
+        {
+            bus().post(new InputEvent.MouseInputEvent());
+        }
     }
 
     public void fireKeyInput()
     {
-        bus().post(new InputEvent.KeyInputEvent());
+        if (bus().hasListeners(InputEvent.KeyInputEvent.class))
+        {
+            bus().post(new InputEvent.KeyInputEvent());
+        }
     }
 
     public void firePlayerChangedDimensionEvent(EntityPlayer player, int fromDim, int toDim)
     {
-        bus().post(new PlayerEvent.PlayerChangedDimensionEvent(player, fromDim, toDim));
+        if (bus().hasListeners(PlayerEvent.PlayerChangedDimensionEvent.class))
+        {
+            bus().post(new PlayerEvent.PlayerChangedDimensionEvent(player, fromDim, toDim));
+        }
     }
 
     public void firePlayerLoggedIn(EntityPlayer player)
     {
-        bus().post(new PlayerEvent.PlayerLoggedInEvent(player));
+        if (bus().hasListeners(PlayerEvent.PlayerLoggedInEvent.class))
+        {
+            bus().post(new PlayerEvent.PlayerLoggedInEvent(player));
+        }
     }
 
     public void firePlayerLoggedOut(EntityPlayer player)
     {
-        bus().post(new PlayerEvent.PlayerLoggedOutEvent(player));
+        if (bus().hasListeners(PlayerEvent.PlayerLoggedOutEvent.class))
+        {
+            bus().post(new PlayerEvent.PlayerLoggedOutEvent(player));
+        }
     }
 
     public void firePlayerRespawnEvent(EntityPlayer player)
     {
-        bus().post(new PlayerEvent.PlayerRespawnEvent(player));
+        if (bus().hasListeners(PlayerEvent.PlayerRespawnEvent.class))
+        {
+            bus().post(new PlayerEvent.PlayerRespawnEvent(player));
+        }
     }
 
     public void firePlayerItemPickupEvent(EntityPlayer player, EntityItem item)
     {
-        bus().post(new PlayerEvent.ItemPickupEvent(player, item));
+        if (bus().hasListeners(PlayerEvent.ItemPickupEvent.class))
+        {
+            bus().post(new PlayerEvent.ItemPickupEvent(player, item));
+        }
     }
 
     public void firePlayerCraftingEvent(EntityPlayer player, ItemStack crafted, IInventory craftMatrix)
     {
-        bus().post(new PlayerEvent.ItemCraftedEvent(player, crafted, craftMatrix));
+        if (bus().hasListeners(PlayerEvent.ItemCraftedEvent.class))
+        {
+            bus().post(new PlayerEvent.ItemCraftedEvent(player, crafted, craftMatrix));
+        }
     }
 
     public void firePlayerSmeltedEvent(EntityPlayer player, ItemStack smelted)
     {
-        bus().post(new PlayerEvent.ItemSmeltedEvent(player, smelted));
+        if (bus().hasListeners(PlayerEvent.ItemSmeltedEvent.class))
+        {
+            bus().post(new PlayerEvent.ItemSmeltedEvent(player, smelted));
+        }
     }
 
     public INetHandler getClientPlayHandler()
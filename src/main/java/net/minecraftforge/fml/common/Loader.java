@@ -26,17 +26,24 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
+import net.minecraft.launchwrapper.LaunchClassLoader;
 import net.minecraftforge.fml.common.LoaderState.ModState;
 import net.minecraftforge.fml.common.ModContainer.Disableable;
 import net.minecraftforge.fml.common.ProgressManager.ProgressBar;
+import net.minecraftforge.fml.common.asm.ClassWarmup;
+import net.minecraftforge.fml.common.asm.TransformedClassCache;
+import net.minecraftforge.fml.common.asm.TransformerMetrics;
+import net.minecraftforge.fml.common.discovery.ModCandidate;
 import net.minecraftforge.fml.common.discovery.ModDiscoverer;
 import net.minecraftforge.fml.common.event.FMLInterModComms;
 import net.minecraftforge.fml.common.event.FMLLoadEvent;
 import net.minecraftforge.fml.common.event.FMLMissingMappingsEvent;
 import net.minecraftforge.fml.common.event.FMLModIdMappingEvent;
 import net.minecraftforge.fml.common.event.FMLMissingMappingsEvent.MissingMapping;
+import net.minecraftforge.fml.common.eventhandler.SubscriberIndex;
 import net.minecraftforge.fml.common.functions.ArtifactVersionNameFunction;
 import net.minecraftforge.fml.common.functions.ModIdFunction;
+import net.minecraftforge.fml.common.patcher.ClassPatchManager;
 import net.minecraftforge.fml.common.registry.GameData;
 import net.minecraftforge.fml.common.registry.GameRegistry;
 import net.minecraftforge.fml.common.registry.ObjectHolderRegistry;
@@ -479,6 +486,7 @@ public class Loader
         modController = new LoadController(this);
         modController.transition(LoaderState.LOADING, false);
         discoverer = identifyMods();
+        SubscriberIndex.install(discoverer.getASMTable(), discoverer.getCandidates());
         ModAPIManager.INSTANCE.manageAPI(modClassLoader, discoverer);
         disableRequestedMods();
         modController.distributeStateMessage(FMLLoadEvent.class);
@@ -501,6 +509,10 @@ public class Loader
                 }
             }
         }
+        if (ClassWarmup.ENABLED)
+        {
+            startClassWarmup();
+        }
         modController.transition(LoaderState.CONSTRUCTING, false);
         modController.distributeStateMessage(LoaderState.CONSTRUCTING, modClassLoader, discoverer.getASMTable(), reverseDependencies);
         FMLLog.fine("Mod signature data");
@@ -516,6 +528,22 @@ public class Loader
         modController.transition(LoaderState.PREINITIALIZATION, false);
     }
 
+    /**
+     * Transforms the classes of the mods found, and the patched Minecraft classes, ahead of them being loaded.
+     */
+    private void startClassWarmup()
+    {
+        Set<String> classes = Sets.newLinkedHashSet(ClassPatchManager.INSTANCE.getPatchedClasses());
+        for (ModCandidate candidate : discoverer.getCandidates())
+        {
+            if (!candidate.isMinecraftJar())
+            {
+                classes.addAll(candidate.getClassList());
+            }
+        }
+        ClassWarmup.start((LaunchClassLoader)getClass().getClassLoader(), classes);
+    }
+
     public void preinitializeMods()
     {
         if (!modController.isInState(LoaderState.PREINITIALIZATION))
@@ -712,7 +740,13 @@ public class Loader
         progressBar.step("Finishing up");
         modController.transition(LoaderState.AVAILABLE, false);
         modController.distributeStateMessage(LoaderState.AVAILABLE);
+        TransformerMetrics.dump(new File(minecraftDir, "logs/fml-transformer-metrics.csv"));
         GameData.freezeData();
+        ClassWarmup.stop();
+        // Everything the remapper needed patched is loaded by now
+        ClassPatchManager.INSTANCE.dropCache();
+        SubscriberIndex.logStatistics();
+        TransformedClassCache.logStatistics();
         FMLLog.info("Forge Mod Loader has successfully loaded %d mod%s", mods.size(), mods.size() == 1 ? "" : "s");
         progressBar.step("Completing Minecraft initialization");
     }
@@ -33,7 +33,7 @@ public class ProxyInjector
     public static void inject(ModContainer mod, ASMDataTable data, Side side, ILanguageAdapter languageAdapter)
     {
         FMLLog.fine("Attempting to inject @SidedProxy classes into %s", mod.getModId());
-        Set<ASMData> targets = data.getAnnotationsFor(mod).get(SidedProxy.class.getName());
+        Set<ASMData> targets = data.getAll(SidedProxy.class.getName(), mod);
         ClassLoader mcl = Loader.instance().getModClassLoader();
 
         for (ASMData targ : targets)
@@ -28,6 +28,7 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
 
 public class ASMTransformerWrapper
 {
@@ -210,6 +211,8 @@ public class ASMTransformerWrapper
     public static abstract class TransformerWrapper implements IClassTransformer
     {
         private final IClassTransformer parent;
+        private final String fingerprint;
+        private final TransformerMetrics metrics;
 
         public TransformerWrapper()
         {
@@ -221,13 +224,45 @@ public class ASMTransformerWrapper
             {
                 throw new RuntimeException(e);
             }
+            this.fingerprint = TransformedClassCache.ENABLED ? TransformedClassCache.fingerprint(parent) : null;
+            this.metrics = TransformerMetrics.ENABLED ? TransformerMetrics.get(getParentClass(), getCoreMod()) : null;
         }
 
         public byte[] transform(String name, String transformedName, byte[] basicClass)
         {
+            if (metrics == null)
+            {
+                return transformCached(name, transformedName, basicClass);
+            }
+            long allocated = TransformerMetrics.allocatedBytes();
+            long start = System.nanoTime();
+            byte[] ret = transformCached(name, transformedName, basicClass);
+            long time = System.nanoTime() - start;
+            metrics.record(basicClass, ret, time, TransformerMetrics.allocatedBytes() - allocated);
+            return ret;
+        }
+
+        private byte[] transformCached(String name, String transformedName, byte[] basicClass)
+        {
+            TransformedClassCache cache = fingerprint != null && basicClass != null ? TransformedClassCache.instance() : null;
+            HashCode key = null;
+            if (cache != null)
+            {
+                key = cache.key(fingerprint, name, transformedName, basicClass);
+                byte[] cached = cache.get(key, basicClass);
+                if (cached != null)
+                {
+                    return cached;
+                }
+            }
             try
             {
-                return parent.transform(name, transformedName, basicClass);
+                byte[] ret = parent.transform(name, transformedName, basicClass);
+                if (key != null)
+                {
+                    cache.put(key, basicClass, ret);
+                }
+                return ret;
             }
             catch(Throwable e)
             {
@@ -0,0 +1,288 @@
+package net.minecraftforge.fml.common.asm;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.minecraft.launchwrapper.IClassNameTransformer;
+import net.minecraft.launchwrapper.IClassTransformer;
+import net.minecraft.launchwrapper.LaunchClassLoader;
+import net.minecraftforge.fml.relauncher.FMLRelaunchLog;
+
+import org.apache.logging.log4j.Level;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs the class transformers known to be thread-safe over the classes of the mods, and the classes
+ * with binary patches, on a pool of worker threads while the mods are loading, ahead of the game
+ * asking for them.
+ *
+ * Those are the binary patcher, the FML core plugin host and the deobfuscation and access transformer
+ * hosts, see {@link #THREAD_SAFE}. The other transformers of the chain, coremods and the
+ * BlamingTransformer among them, are never run by the workers, which let the class through them
+ * unchanged. Each thread-safe transformer is staged with the bytes it was given, and when the class is
+ * loaded it hands out its staged output only if the bytes it is given now are the same, and runs as
+ * usual otherwise, for instance after a coremod changed the class. The other transformers always run,
+ * on the loading thread, in their place in the chain.
+ *
+ * The chain is a plain ArrayList of the class loader, iterated without a lock by every thread that
+ * loads a class, the splash screen among them. It is never resized here: each transformer is
+ * replaced in place by a {@link Slot} that delegates to it, which leaves the iterators valid and
+ * behaves exactly like the original chain whichever mix of old and new entries a thread sees. The
+ * slots stay in place, delegating again, once loading is complete, see {@link #stop()}.
+ *
+ * This runs transformers on classes that may never be loaded, so it is opt in with
+ * -Dfml.classWarmup=true. -Dfml.classWarmup.threads sets the number of workers.
+ */
+public class ClassWarmup
+{
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("fml.classWarmup", "false"));
+    private static final int THREADS = Integer.parseInt(System.getProperty("fml.classWarmup.threads", String.valueOf(Math.max(1, Runtime.getRuntime().availableProcessors() - 1))));
+    /**
+     * The transformers that may run on the workers, by class name, or by the class they wrap for the
+     * transformers of coremods.
+     */
+    private static final ImmutableSet<String> THREAD_SAFE = ImmutableSet.of(
+            "net.minecraftforge.fml.common.asm.transformers.PatchingTransformer",
+            "net.minecraftforge.fml.common.asm.transformers.FMLTransformerHost",
+            "net.minecraftforge.fml.common.asm.transformers.DeobfuscationTransformerHost",
+            "net.minecraftforge.fml.common.asm.transformers.AccessTransformerHost"
+    );
+
+    private static ClassWarmup instance;
+
+    private final LaunchClassLoader loader;
+    private final IClassTransformer[] chain;
+    private final boolean[] staging;
+    private final int lastStaged;
+    private final IClassNameTransformer renamer;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, Staged> staged = new ConcurrentHashMap<String, Staged>();
+    private final AtomicInteger stagedCount = new AtomicInteger();
+    private final AtomicInteger used = new AtomicInteger();
+    private final AtomicInteger stale = new AtomicInteger();
+    private final AtomicLong savedNanos = new AtomicLong();
+    private volatile boolean active;
+
+    private static class Staged
+    {
+        final String name;
+        // By position in the chain, null for the transformers left to the loading thread
+        final byte[][] inputs;
+        final byte[][] outputs;
+        final long[] nanos;
+
+        Staged(String name, int length)
+        {
+            this.name = name;
+            this.inputs = new byte[length][];
+            this.outputs = new byte[length][];
+            this.nanos = new long[length];
+        }
+    }
+
+    /**
+     * Starts transforming the classes in the background.
+     *
+     * @param classNames Untransformed names of the classes, in binary or internal form
+     */
+    public static synchronized void start(LaunchClassLoader loader, Collection<String> classNames)
+    {
+        if (instance != null || classNames.isEmpty())
+        {
+            return;
+        }
+        List<IClassTransformer> transformers;
+        try
+        {
+            Field field = LaunchClassLoader.class.getDeclaredField("transformers");
+            field.setAccessible(true);
+            @SuppressWarnings("unchecked")
+            List<IClassTransformer> list = (List<IClassTransformer>)field.get(loader);
+            transformers = list;
+        }
+        catch (Exception e)
+        {
+            FMLRelaunchLog.log(Level.WARN, e, "Unable to access the transformers of the class loader, class warmup is disabled");
+            return;
+        }
+        boolean any = false;
+        for (IClassTransformer transformer : transformers)
+        {
+            any |= isThreadSafe(transformer);
+        }
+        if (!any)
+        {
+            FMLRelaunchLog.fine("None of the class transformers can run ahead of loading, class warmup is disabled");
+            return;
+        }
+        instance = new ClassWarmup(loader, transformers);
+        instance.submit(classNames);
+    }
+
+    /**
+     * Stops the workers, returns the slots to the original transformers, and reports the time saved.
+     */
+    public static synchronized void stop()
+    {
+        if (instance == null)
+        {
+            return;
+        }
+        instance.shutdown();
+        instance = null;
+    }
+
+    private static boolean isThreadSafe(IClassTransformer transformer)
+    {
+        if (transformer instanceof ASMTransformerWrapper.TransformerWrapper)
+        {
+            return THREAD_SAFE.contains(((ASMTransformerWrapper.TransformerWrapper)transformer).getParentClass());
+        }
+        return THREAD_SAFE.contains(transformer.getClass().getName());
+    }
+
+    private ClassWarmup(LaunchClassLoader loader, List<IClassTransformer> transformers)
+    {
+        this.loader = loader;
+        this.chain = transformers.toArray(new IClassTransformer[transformers.size()]);
+        this.staging = new boolean[chain.length];
+        int lastStaged = -1;
+        IClassNameTransformer renamer = null;
+        for (int i = 0; i < chain.length; i++)
+        {
+            staging[i] = isThreadSafe(chain[i]);
+            if (staging[i])
+            {
+                lastStaged = i;
+            }
+            if (renamer == null && chain[i] instanceof IClassNameTransformer)
+            {
+                renamer = (IClassNameTransformer)chain[i];
+            }
+        }
+        this.lastStaged = lastStaged;
+        this.renamer = renamer;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, THREADS), new ThreadFactoryBuilder().setNameFormat("FML Class Warmup #%d").setDaemon(true).build());
+        for (int i = 0; i < chain.length; i++)
+        {
+            transformers.set(i, new Slot(i, chain[i]));
+        }
+        active = true;
+    }
+
+    private void submit(Collection<String> classNames)
+    {
+        FMLRelaunchLog.fine("Warming up %d classes on %d threads", classNames.size(), Math.max(1, THREADS));
+        for (String className : classNames)
+        {
+            final String name = className.replace('/', '.');
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    stage(name);
+                }
+            });
+        }
+    }
+
+    private void stage(String name)
+    {
+        String transformedName = renamer == null ? name : renamer.remapClassName(name);
+        try
+        {
+            byte[] bytes = loader.getClassBytes(name);
+            if (bytes == null || staged.containsKey(transformedName))
+            {
+                return;
+            }
+            Staged entry = new Staged(name, chain.length);
+            for (int i = 0; i <= lastStaged; i++)
+            {
+                if (staging[i])
+                {
+                    long start = System.nanoTime();
+                    entry.inputs[i] = bytes;
+                    bytes = chain[i].transform(name, transformedName, bytes);
+                    entry.outputs[i] = bytes;
+                    entry.nanos[i] = System.nanoTime() - start;
+                }
+            }
+            if (staged.putIfAbsent(transformedName, entry) == null)
+            {
+                stagedCount.incrementAndGet();
+            }
+        }
+        catch (Throwable t)
+        {
+            // The class is transformed again when it is loaded, which reports the problem
+            FMLRelaunchLog.log(Level.DEBUG, t, "Unable to warm up the class %s", name);
+        }
+    }
+
+    private void shutdown()
+    {
+        executor.shutdownNow();
+        // A thread may still be part way through the chain, so the slots are not removed
+        active = false;
+        FMLRelaunchLog.info("Class warmup: %d classes staged, %d transformations used saving %d ms on the loading threads, %d stale, %d classes unused",
+                stagedCount.get(), used.get(), TimeUnit.NANOSECONDS.toMillis(savedNanos.get()), stale.get(), staged.size());
+        staged.clear();
+    }
+
+    /**
+     * Stands in for one transformer of the original chain.
+     */
+    private class Slot implements IClassTransformer
+    {
+        private final int index;
+        private final IClassTransformer transformer;
+
+        Slot(int index, IClassTransformer transformer)
+        {
+            this.index = index;
+            this.transformer = transformer;
+        }
+
+        @Override
+        public byte[] transform(String name, String transformedName, byte[] bytes)
+        {
+            Staged entry = active && staging[index] ? staged.get(transformedName) : null;
+            if (entry == null)
+            {
+                return transformer.transform(name, transformedName, bytes);
+            }
+            if (index == lastStaged)
+            {
+                staged.remove(transformedName, entry);
+            }
+            byte[] input = entry.inputs[index];
+            if (entry.name.equals(name) && bytes != null && (input == bytes || Arrays.equals(input, bytes)))
+            {
+                used.incrementAndGet();
+                savedNanos.addAndGet(entry.nanos[index]);
+                return entry.outputs[index];
+            }
+            stale.incrementAndGet();
+            return transformer.transform(name, transformedName, bytes);
+        }
+
+        @Override
+        public String toString()
+        {
+            return transformer.toString();
+        }
+    }
+}
@@ -178,8 +178,12 @@ public class FMLSanityChecker implements IFMLCallHook
         cl = (LaunchClassLoader) data.get("classLoader");
         File mcDir = (File)data.get("mcLocation");
         fmlLocation = (File)data.get("coremodLocation");
-        ClassPatchManager.INSTANCE.setup(FMLLaunchHandler.side());
+        ClassPatchManager.INSTANCE.setup(FMLLaunchHandler.side(), mcDir == null ? null : new File(mcDir, "classcache"));
         FMLDeobfuscatingRemapper.INSTANCE.setup(mcDir, cl, (String) data.get("deobfuscationFileName"));
+        if (ClassPatchManager.PREWARM)
+        {
+            ClassPatchManager.INSTANCE.prewarm(cl);
+        }
     }
 
 }
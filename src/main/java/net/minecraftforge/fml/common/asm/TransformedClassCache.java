@@ -0,0 +1,387 @@
+package net.minecraftforge.fml.common.asm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.CodeSource;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.minecraft.launchwrapper.Launch;
+import net.minecraft.launchwrapper.LaunchClassLoader;
+import net.minecraftforge.fml.common.asm.transformers.IUncachedTransformer;
+import net.minecraftforge.fml.common.asm.transformers.deobf.FMLDeobfuscatingRemapper;
+import net.minecraftforge.fml.relauncher.FMLInjectionData;
+import net.minecraftforge.fml.relauncher.FMLLaunchHandler;
+import net.minecraftforge.fml.relauncher.FMLRelaunchLog;
+
+import org.apache.logging.log4j.Level;
+import org.objectweb.asm.ClassReader;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Persistent cache of the output of coremod class transformers, see {@link ASMTransformerWrapper}.
+ * Only the transformers of coremods are cached, the binary patches, the deobfuscation and the
+ * access transformers run on every launch.
+ *
+ * Entries are keyed by a hash of the FML version, the side, the transformer and the jar it was loaded
+ * from, the class name, the exact input bytes, and the untransformed bytes of every supertype of the
+ * class or their absence, as transformers often look at the parent class. A change to any of those,
+ * including one made by a transformer running earlier, misses the cache, so it never has to be
+ * invalidated by hand.
+ *
+ * Transformed classes are appended to a pack file, and their location to an index file that is
+ * read once at startup. Both live in the classcache folder of the game directory, and are started
+ * over when FML is updated, the side changes, or the pack has grown to fml.classCache.maxSize MB,
+ * after which no more classes are added for the rest of the session.
+ *
+ * Transformers with side effects beyond the bytes they return won't see cached classes, and those
+ * reading classes other than the supertypes, for instance to compute stack frames, may get output
+ * computed against an older version of them. FML's own are marked with {@link IUncachedTransformer}
+ * and always run, but those of other coremods can't be told apart, so the cache is opt in with
+ * -Dfml.classCache=true.
+ */
+public class TransformedClassCache
+{
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("fml.classCache", "false"));
+    private static final long MAX_SIZE = Long.parseLong(System.getProperty("fml.classCache.maxSize", "256")) * 1024 * 1024;
+
+    private static final int MAGIC = 0x464D4C43; // FMLC
+    private static final int VERSION = 2;
+    private static final int KEY_SIZE = 20;
+    private static final int RECORD_SIZE = KEY_SIZE + 8 + 4;
+    // Length stored for transformers that returned their input unchanged
+    private static final int UNCHANGED = -1;
+    // Deeper hierarchies can only come from a cycle in broken classes
+    private static final int MAX_DEPTH = 64;
+
+    private static TransformedClassCache instance;
+    private static boolean failed;
+
+    private final ConcurrentMap<HashCode, long[]> entries = new ConcurrentHashMap<HashCode, long[]>();
+    // Hash of the untransformed bytes of a class and of its supertypes, by class name
+    private final ConcurrentMap<String, HashCode> ancestry = new ConcurrentHashMap<String, HashCode>();
+    private final HashCode environment;
+    private final RandomAccessFile index;
+    private final RandomAccessFile pack;
+    private final FileChannel packChannel;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private boolean full;
+
+    /**
+     * Returns the cache, opening it on first use, or null if it is disabled or could not be opened.
+     */
+    public static synchronized TransformedClassCache instance()
+    {
+        if (instance == null && ENABLED && !failed)
+        {
+            try
+            {
+                File dir = new File(Launch.minecraftHome == null ? new File(".") : Launch.minecraftHome, "classcache");
+                instance = new TransformedClassCache(dir);
+            }
+            catch (IOException e)
+            {
+                FMLRelaunchLog.log(Level.ERROR, e, "Unable to open the transformed class cache, it will not be used");
+                failed = true;
+            }
+        }
+        return instance;
+    }
+
+    private TransformedClassCache(File dir) throws IOException
+    {
+        if (!dir.isDirectory() && !dir.mkdirs())
+        {
+            throw new IOException("Could not create " + dir);
+        }
+        // FML and Minecraft versions, which also cover the deobfuscation data, and the side, as
+        // transformers such as the SideTransformer strip different members on the client and server
+        Object[] versions = Arrays.copyOf(FMLInjectionData.data(), 7);
+        versions[6] = FMLLaunchHandler.side();
+        environment = Hashing.sha1().hashString(Joiner.on(':').useForNull("null").join(versions), Charsets.UTF_8);
+        index = new RandomAccessFile(new File(dir, "classes.idx"), "rw");
+        pack = new RandomAccessFile(new File(dir, "classes.pack"), "rw");
+        packChannel = pack.getChannel();
+
+        if (!load())
+        {
+            FMLRelaunchLog.fine("Starting a new transformed class cache in %s", dir);
+            entries.clear();
+            pack.setLength(0);
+            index.setLength(0);
+            index.writeInt(MAGIC);
+            index.writeInt(VERSION);
+            index.write(environment.asBytes());
+        }
+        else
+        {
+            FMLRelaunchLog.fine("Loaded %d entries from the transformed class cache in %s", entries.size(), dir);
+        }
+    }
+
+    /**
+     * Reads the index, returns false if it is missing or belongs to a different FML.
+     */
+    private boolean load() throws IOException
+    {
+        long length = index.length();
+        if (length < 8 + KEY_SIZE || pack.length() >= MAX_SIZE)
+        {
+            return false;
+        }
+        // Read into the heap rather than mapped, a mapped file can't be truncated on Windows
+        byte[] data = new byte[(int)length];
+        index.seek(0);
+        index.readFully(data);
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        byte[] env = new byte[KEY_SIZE];
+        if (buf.getInt() != MAGIC || buf.getInt() != VERSION)
+        {
+            return false;
+        }
+        buf.get(env);
+        if (!Arrays.equals(env, environment.asBytes()))
+        {
+            return false;
+        }
+        long packLength = pack.length();
+        while (buf.remaining() >= RECORD_SIZE)
+        {
+            byte[] key = new byte[KEY_SIZE];
+            buf.get(key);
+            long offset = buf.getLong();
+            int size = buf.getInt();
+            // Anything past the end of the pack was not completely written
+            if (size == UNCHANGED || offset + size <= packLength)
+            {
+                entries.put(HashCode.fromBytes(key), new long[] { offset, size });
+            }
+        }
+        // Drop a partially written record
+        index.seek(length - buf.remaining());
+        index.setLength(length - buf.remaining());
+        return true;
+    }
+
+    /**
+     * Identifies a transformer by its class and the jar or directory it was loaded from.
+     *
+     * @return The fingerprint, or null if the origin of the transformer is unknown or it must always run, in which case it cannot be cached
+     */
+    public static String fingerprint(Object transformer)
+    {
+        if (transformer instanceof IUncachedTransformer)
+        {
+            return null;
+        }
+        CodeSource source = transformer.getClass().getProtectionDomain().getCodeSource();
+        URL location = source == null ? null : source.getLocation();
+        if (location == null || !"file".equals(location.getProtocol()))
+        {
+            return null;
+        }
+        File file = new File(location.getPath());
+        if (!file.exists())
+        {
+            return null;
+        }
+        return transformer.getClass().getName() + "@" + file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+    }
+
+    public HashCode key(String fingerprint, String name, String transformedName, byte[] bytes)
+    {
+        Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putBytes(environment.asBytes());
+        hasher.putString(fingerprint, Charsets.UTF_8);
+        hasher.putString(name, Charsets.UTF_8);
+        hasher.putString(transformedName, Charsets.UTF_8);
+        hasher.putBytes(bytes);
+        try
+        {
+            ClassReader reader = new ClassReader(bytes);
+            putSupertypes(hasher, reader.getSuperName(), reader.getInterfaces(), 0);
+        }
+        catch (RuntimeException e)
+        {
+            // Not a class file, the bytes are all there is
+        }
+        return hasher.hash();
+    }
+
+    private void putSupertypes(Hasher hasher, String superName, String[] interfaces, int depth)
+    {
+        if (superName != null)
+        {
+            hasher.putBytes(ancestry(superName, depth).asBytes());
+        }
+        for (String name : interfaces)
+        {
+            hasher.putBytes(ancestry(name, depth).asBytes());
+        }
+    }
+
+    /**
+     * Hashes the untransformed bytes of a class and its supertypes, or the fact that it can't be found.
+     * The bytes of a class don't change while the game runs, so the result is kept for the session.
+     */
+    private HashCode ancestry(String name, int depth)
+    {
+        HashCode ret = ancestry.get(name);
+        if (ret != null)
+        {
+            return ret;
+        }
+        Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putString(name, Charsets.UTF_8);
+        // Classes of the JVM only change with it, and the class loader can't read them
+        byte[] bytes = depth >= MAX_DEPTH || name.startsWith("java/") ? null : readClass(name);
+        hasher.putBoolean(bytes != null);
+        if (bytes != null)
+        {
+            hasher.putBytes(bytes);
+            try
+            {
+                ClassReader reader = new ClassReader(bytes);
+                putSupertypes(hasher, reader.getSuperName(), reader.getInterfaces(), depth + 1);
+            }
+            catch (RuntimeException e)
+            {
+                // Not a class file either, it can't have supertypes
+            }
+        }
+        ret = hasher.hash();
+        if (depth < MAX_DEPTH)
+        {
+            ancestry.putIfAbsent(name, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * @param name Internal name, as found in a class file given to the coremod transformers
+     */
+    private static byte[] readClass(String name)
+    {
+        LaunchClassLoader loader = Launch.classLoader;
+        if (loader == null)
+        {
+            return null;
+        }
+        try
+        {
+            // Minecraft classes are referred to by their deobfuscated names from mod classes
+            return loader.getClassBytes(FMLDeobfuscatingRemapper.INSTANCE.unmap(name).replace('/', '.'));
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @param input The bytes the key was computed for, returned if the transformer left them unchanged
+     * @return The cached output, or null if there is none
+     */
+    public byte[] get(HashCode key, byte[] input)
+    {
+        long[] entry = entries.get(key);
+        if (entry == null)
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry[1] == UNCHANGED)
+        {
+            hits.incrementAndGet();
+            return input;
+        }
+        try
+        {
+            ByteBuffer buf = ByteBuffer.allocate((int)entry[1]);
+            while (buf.hasRemaining())
+            {
+                if (packChannel.read(buf, entry[0] + buf.position()) < 0)
+                {
+                    throw new IOException("Unexpected end of the class cache pack");
+                }
+            }
+            hits.incrementAndGet();
+            return buf.array();
+        }
+        catch (IOException e)
+        {
+            FMLRelaunchLog.log(Level.WARN, e, "Unable to read a class from the transformed class cache");
+            entries.remove(key);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    public synchronized void put(HashCode key, byte[] input, byte[] output)
+    {
+        if (output == null || entries.containsKey(key))
+        {
+            return;
+        }
+        try
+        {
+            long offset = pack.length();
+            int size = UNCHANGED;
+            if (output != input && !Arrays.equals(input, output))
+            {
+                // The class that crosses the limit is still written, which starts the cache over next launch
+                if (offset >= MAX_SIZE)
+                {
+                    if (!full)
+                    {
+                        FMLRelaunchLog.fine("The transformed class cache is full, new classes are cached again after the next launch");
+                        full = true;
+                    }
+                    return;
+                }
+                size = output.length;
+                pack.seek(offset);
+                pack.write(output);
+            }
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+            record.put(key.asBytes()).putLong(offset).putInt(size);
+            index.seek(index.length());
+            index.write(record.array());
+            entries.put(key, new long[] { offset, size });
+        }
+        catch (IOException e)
+        {
+            FMLRelaunchLog.log(Level.WARN, e, "Unable to write a class to the transformed class cache");
+        }
+    }
+
+    public static void logStatistics()
+    {
+        TransformedClassCache cache;
+        synchronized (TransformedClassCache.class)
+        {
+            cache = instance;
+        }
+        if (cache != null)
+        {
+            cache.log();
+        }
+    }
+
+    private void log()
+    {
+        FMLRelaunchLog.info("Transformed class cache: %d hits, %d misses, %d entries", hits.get(), misses.get(), entries.size());
+    }
+}
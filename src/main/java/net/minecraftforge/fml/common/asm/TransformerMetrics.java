@@ -0,0 +1,193 @@
+package net.minecraftforge.fml.common.asm;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.minecraftforge.fml.common.eventhandler.EventProfiler;
+import net.minecraftforge.fml.relauncher.FMLRelaunchLog;
+
+import org.apache.logging.log4j.Level;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+/**
+ * Counts what the coremod transformers wrapped by {@link ASMTransformerWrapper} do: calls, classes
+ * they changed, time spent, bytes in and out, and bytes allocated where the JVM can tell.
+ *
+ * Opt in with -Dfml.transformerMetrics=true. The totals are logged per coremod once loading is
+ * complete, and written per transformer to logs/fml-transformer-metrics.csv.
+ */
+public class TransformerMetrics
+{
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("fml.transformerMetrics", "false"));
+
+    private static final ConcurrentMap<String, TransformerMetrics> metrics = new ConcurrentHashMap<String, TransformerMetrics>();
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    // HotSpot's com.sun.management.ThreadMXBean.getThreadAllocatedBytes, looked up so other JVMs still work
+    private static final Method allocatedBytes = findAllocatedBytes();
+
+    private final String transformer;
+    private final String coreMod;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong modified = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong allocated = new AtomicLong();
+
+    private TransformerMetrics(String transformer, String coreMod)
+    {
+        this.transformer = transformer;
+        this.coreMod = coreMod;
+    }
+
+    public static TransformerMetrics get(String transformer, String coreMod)
+    {
+        String key = transformer + "@" + coreMod;
+        TransformerMetrics ret = metrics.get(key);
+        if (ret == null)
+        {
+            ret = new TransformerMetrics(transformer, coreMod);
+            TransformerMetrics existing = metrics.putIfAbsent(key, ret);
+            if (existing != null)
+            {
+                ret = existing;
+            }
+        }
+        return ret;
+    }
+
+    private static Method findAllocatedBytes()
+    {
+        try
+        {
+            Class<?> type = Class.forName("com.sun.management.ThreadMXBean");
+            if (!type.isInstance(threads) || !(Boolean)type.getMethod("isThreadAllocatedMemorySupported").invoke(threads))
+            {
+                return null;
+            }
+            return type.getMethod("getThreadAllocatedBytes", long.class);
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return The bytes allocated by the current thread so far, or 0 if the JVM does not tell
+     */
+    public static long allocatedBytes()
+    {
+        if (allocatedBytes == null)
+        {
+            return 0;
+        }
+        try
+        {
+            return (Long)allocatedBytes.invoke(threads, Thread.currentThread().getId());
+        }
+        catch (Exception e)
+        {
+            return 0;
+        }
+    }
+
+    public void record(byte[] input, byte[] output, long time, long allocation)
+    {
+        calls.incrementAndGet();
+        nanos.addAndGet(time);
+        allocated.addAndGet(allocation);
+        bytesIn.addAndGet(input == null ? 0 : input.length);
+        bytesOut.addAndGet(output == null ? 0 : output.length);
+        if (output != input && !Arrays.equals(output, input))
+        {
+            modified.incrementAndGet();
+        }
+    }
+
+    /**
+     * Logs the totals per coremod, slowest first, and writes the numbers per transformer to the file.
+     */
+    public static void dump(File file)
+    {
+        if (!ENABLED || metrics.isEmpty())
+        {
+            return;
+        }
+        List<TransformerMetrics> all = Lists.newArrayList(metrics.values());
+        Map<String, TransformerMetrics> byCoreMod = Maps.newHashMap();
+        for (TransformerMetrics m : all)
+        {
+            TransformerMetrics total = byCoreMod.get(m.coreMod);
+            if (total == null)
+            {
+                total = new TransformerMetrics("*", m.coreMod);
+                byCoreMod.put(m.coreMod, total);
+            }
+            total.add(m);
+        }
+        Comparator<TransformerMetrics> slowest = new Comparator<TransformerMetrics>()
+        {
+            @Override
+            public int compare(TransformerMetrics o1, TransformerMetrics o2)
+            {
+                long d = o2.nanos.get() - o1.nanos.get();
+                return d < 0 ? -1 : d > 0 ? 1 : 0;
+            }
+        };
+        List<TransformerMetrics> coreMods = Lists.newArrayList(byCoreMod.values());
+        Collections.sort(coreMods, slowest);
+        Collections.sort(all, slowest);
+
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%-40s %10s %10s %10s %12s %12s %12s", "Coremod", "Time (ms)", "Calls", "Modified", "KB in", "KB out", "KB alloc"));
+        for (TransformerMetrics m : coreMods)
+        {
+            table.append('\n').append(String.format("%-40s %10d %10d %10d %12d %12d %12d", m.coreMod, TimeUnit.NANOSECONDS.toMillis(m.nanos.get()),
+                    m.calls.get(), m.modified.get(), m.bytesIn.get() / 1024, m.bytesOut.get() / 1024, m.allocated.get() / 1024));
+        }
+        FMLRelaunchLog.info("Coremod transformer metrics:\n%s", table);
+
+        StringBuilder csv = new StringBuilder("coremod,transformer,calls,modified,nanos,bytes_in,bytes_out,bytes_allocated\n");
+        for (TransformerMetrics m : all)
+        {
+            csv.append(EventProfiler.csv(m.coreMod)).append(',').append(EventProfiler.csv(m.transformer)).append(',').append(m.calls.get()).append(',').append(m.modified.get()).append(',')
+               .append(m.nanos.get()).append(',').append(m.bytesIn.get()).append(',').append(m.bytesOut.get()).append(',').append(m.allocated.get()).append('\n');
+        }
+        try
+        {
+            Files.createParentDirs(file);
+            Files.write(csv, file, Charsets.UTF_8);
+        }
+        catch (IOException e)
+        {
+            FMLRelaunchLog.log(Level.WARN, e, "Unable to write the transformer metrics to %s", file);
+        }
+    }
+
+    private void add(TransformerMetrics other)
+    {
+        calls.addAndGet(other.calls.get());
+        modified.addAndGet(other.modified.get());
+        nanos.addAndGet(other.nanos.get());
+        bytesIn.addAndGet(other.bytesIn.get());
+        bytesOut.addAndGet(other.bytesOut.get());
+        allocated.addAndGet(other.allocated.get());
+    }
+}
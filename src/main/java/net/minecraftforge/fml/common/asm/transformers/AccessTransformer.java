@@ -31,15 +31,20 @@ import java.net.URL;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
-import net.minecraft.launchwrapper.IClassTransformer;
 import net.minecraftforge.fml.relauncher.FMLRelaunchLog;
 
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldNode;
@@ -49,22 +54,23 @@ import org.objectweb.asm.tree.MethodNode;
 import com.google.common.base.Charsets;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 import com.google.common.io.CharSource;
 import com.google.common.io.LineProcessor;
 import com.google.common.io.Resources;
 
-public class AccessTransformer implements IClassTransformer
+public class AccessTransformer implements IStreamingTransformer, IClassNodeTransformer, IPreScanFilter
 {
     private static final boolean DEBUG = Boolean.parseBoolean(System.getProperty("fml.debugAccessTransformer", "false"));
     class Modifier
     {
         public String name = "";
         public String desc = "";
-        public int oldAccess = 0;
-        public int newAccess = 0;
         public int targetAccess = 0;
         public boolean changeFinal = false;
         public boolean markFinal = false;
@@ -90,6 +96,113 @@ public class AccessTransformer implements IClassTransformer
     }
 
     private Multimap<String, Modifier> modifiers = ArrayListMultimap.create();
+    // The modifiers compiled per class, built when first needed
+    private volatile Map<String, ClassRules> rules;
+
+    /**
+     * The modifiers of one class, indexed by member. Wildcard modifiers are merged into the list of
+     * every member with modifiers of its own, in file order, so each member needs one lookup.
+     */
+    private static class ClassRules
+    {
+        final List<Modifier> classRules = Lists.newArrayList();
+        final Map<String, List<Modifier>> fields = Maps.newHashMap();
+        final List<Modifier> fieldWildcards = Lists.newArrayList();
+        final Map<String, Map<String, List<Modifier>>> methods = Maps.newHashMap();
+        final List<Modifier> methodWildcards = Lists.newArrayList();
+
+        ClassRules(Collection<Modifier> mods)
+        {
+            for (Modifier m : mods)
+            {
+                if (m.modifyClassVisibility || m.name.equals("*"))
+                {
+                    continue;
+                }
+                if (m.desc.isEmpty())
+                {
+                    fields.put(m.name, Lists.<Modifier>newArrayList());
+                }
+                else
+                {
+                    Map<String, List<Modifier>> descs = methods.get(m.name);
+                    if (descs == null)
+                    {
+                        descs = Maps.newHashMap();
+                        methods.put(m.name, descs);
+                    }
+                    descs.put(m.desc, Lists.<Modifier>newArrayList());
+                }
+            }
+            for (Modifier m : mods)
+            {
+                if (m.modifyClassVisibility)
+                {
+                    classRules.add(m);
+                }
+                else if (m.desc.isEmpty() && m.name.equals("*"))
+                {
+                    fieldWildcards.add(m);
+                    for (List<Modifier> list : fields.values())
+                    {
+                        list.add(m);
+                    }
+                }
+                else if (m.desc.isEmpty())
+                {
+                    fields.get(m.name).add(m);
+                }
+                else if (m.name.equals("*"))
+                {
+                    methodWildcards.add(m);
+                    for (Map<String, List<Modifier>> descs : methods.values())
+                    {
+                        for (List<Modifier> list : descs.values())
+                        {
+                            list.add(m);
+                        }
+                    }
+                }
+                else
+                {
+                    methods.get(m.name).get(m.desc).add(m);
+                }
+            }
+        }
+
+        /**
+         * @param matched Names of the fields seen so far, a named modifier only applies to the first field of that name
+         */
+        List<Modifier> getField(String name, Set<String> matched)
+        {
+            List<Modifier> ret = fields.get(name);
+            return ret != null && matched.add(name) ? ret : fieldWildcards;
+        }
+
+        List<Modifier> getMethod(String name, String desc)
+        {
+            Map<String, List<Modifier>> descs = methods.get(name);
+            List<Modifier> ret = descs == null ? null : descs.get(desc);
+            return ret != null ? ret : methodWildcards;
+        }
+
+        boolean hasMethodRules()
+        {
+            return !methods.isEmpty() || !methodWildcards.isEmpty();
+        }
+
+        /**
+         * Whether the private method will not be private any more, so calls to it have to become virtual.
+         */
+        boolean isNowOverridable(int access, String name, String desc)
+        {
+            if ((access & ACC_PRIVATE) == 0 || name.equals("<init>"))
+            {
+                return false;
+            }
+            return (apply(access, getMethod(name, desc)) & ACC_PRIVATE) == 0;
+        }
+    }
 
     public AccessTransformer() throws IOException
     {
@@ -169,6 +282,29 @@ public class AccessTransformer implements IClassTransformer
                 return true;
             }
         });
+        rules = null;
+    }
+
+    private Map<String, ClassRules> getRules()
+    {
+        Map<String, ClassRules> ret = rules;
+        if (ret == null)
+        {
+            synchronized (this)
+            {
+                ret = rules;
+                if (ret == null)
+                {
+                    ret = Maps.newHashMap();
+                    for (String className : modifiers.keySet())
+                    {
+                        ret.put(className, new ClassRules(modifiers.get(className)));
+                    }
+                    rules = ret;
+                }
+            }
+        }
+        return ret;
     }
 
     @Override
@@ -180,89 +316,75 @@ public class AccessTransformer implements IClassTransformer
         {
             FMLRelaunchLog.fine("Considering all methods and fields on %s (%s)\n", transformedName, name);
         }
-        if (!modifiers.containsKey(transformedName)) { return bytes; }
-
-        ClassNode classNode = new ClassNode();
-        ClassReader classReader = new ClassReader(bytes);
-        classReader.accept(classNode, 0);
+        final ClassRules classRules = getRules().get(transformedName);
+        if (classRules == null) { return bytes; }
 
-        Collection<Modifier> mods = modifiers.get(transformedName);
-        for (Modifier m : mods)
+        ClassReader reader = new ClassReader(bytes);
+        // Calls to methods that are no longer private are rewritten wherever they are, so find those methods first
+        final Multimap<String, String> nowOverridable = HashMultimap.create();
+        if (classRules.hasMethodRules())
         {
-            if (m.modifyClassVisibility)
-            {
-                classNode.access = getFixedAccess(classNode.access, m);
-                if (DEBUG)
-                {
-                    System.out.println(String.format("Class: %s %s -> %s", name, toBinary(m.oldAccess), toBinary(m.newAccess)));
-                }
-                continue;
-            }
-            if (m.desc.isEmpty())
+            reader.accept(new ClassVisitor(Opcodes.ASM5)
             {
-                for (FieldNode n : classNode.fields)
+                @Override
+                public MethodVisitor visitMethod(int access, String methodName, String desc, String signature, String[] exceptions)
                 {
-                    if (n.name.equals(m.name) || m.name.equals("*"))
+                    if (classRules.isNowOverridable(access, methodName, desc))
                     {
-                        n.access = getFixedAccess(n.access, m);
-                        if (DEBUG)
-                        {
-                            System.out.println(String.format("Field: %s.%s %s -> %s", name, n.name, toBinary(m.oldAccess), toBinary(m.newAccess)));
-                        }
-
-                        if (!m.name.equals("*"))
-                        {
-                            break;
-                        }
+                        nowOverridable.put(methodName, desc);
                     }
+                    return null;
                 }
-            }
-            else
-            {
-                List<MethodNode> nowOverridable = Lists.newArrayList();
-                for (MethodNode n : classNode.methods)
-                {
-                    if ((n.name.equals(m.name) && n.desc.equals(m.desc)) || m.name.equals("*"))
-                    {
-                        n.access = getFixedAccess(n.access, m);
-
-                        // constructors always use INVOKESPECIAL
-                        if (!n.name.equals("<init>"))
-                        {
-                            // if we changed from private to something else we need to replace all INVOKESPECIAL calls to this method with INVOKEVIRTUAL
-                            // so that overridden methods will be called. Only need to scan this class, because obviously the method was private.
-                            boolean wasPrivate = (m.oldAccess & ACC_PRIVATE) == ACC_PRIVATE;
-                            boolean isNowPrivate = (m.newAccess & ACC_PRIVATE) == ACC_PRIVATE;
-
-                            if (wasPrivate && !isNowPrivate)
-                            {
-                                nowOverridable.add(n);
-                            }
-
-                        }
+            }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        }
+        // Only access flags and invoke opcodes change, so unchanged methods are copied as they are
+        ClassWriter writer = new ClassWriter(reader, 0);
+        reader.accept(new AccessVisitor(writer, name, classRules, nowOverridable), 0);
+        return writer.toByteArray();
+    }
 
-                        if (DEBUG)
-                        {
-                            System.out.println(String.format("Method: %s.%s%s %s -> %s", name, n.name, n.desc, toBinary(m.oldAccess), toBinary(m.newAccess)));
-                        }
+    @Override
+    public boolean accepts(String name, String transformedName, ClassPreScan scan)
+    {
+        return getRules().containsKey(transformedName);
+    }
 
-                        if (!m.name.equals("*"))
-                        {
-                            break;
-                        }
-                    }
-                }
+    @Override
+    public int transform(String name, String transformedName, ClassNode classNode)
+    {
+        ClassRules classRules = getRules().get(transformedName);
+        if (classRules == null) { return UNCHANGED; }
 
-                replaceInvokeSpecial(classNode, nowOverridable);
+        classNode.access = apply(classNode.access, classRules.classRules);
+        if (DEBUG && !classRules.classRules.isEmpty())
+        {
+            System.out.println(String.format("Class: %s -> %s", name, toBinary(classNode.access)));
+        }
+        Set<String> matched = Sets.newHashSet();
+        for (FieldNode n : classNode.fields)
+        {
+            n.access = apply(n.access, classRules.getField(n.name, matched));
+        }
+        Multimap<String, String> nowOverridable = HashMultimap.create();
+        for (MethodNode n : classNode.methods)
+        {
+            // if we changed from private to something else we need to replace all INVOKESPECIAL calls to this method with INVOKEVIRTUAL
+            // so that overridden methods will be called. Only need to scan this class, because obviously the method was private.
+            if (classRules.isNowOverridable(n.access, n.name, n.desc))
+            {
+                nowOverridable.put(n.name, n.desc);
             }
+            n.access = apply(n.access, classRules.getMethod(n.name, n.desc));
+        }
+        if (!nowOverridable.isEmpty())
+        {
+            replaceInvokeSpecial(classNode, nowOverridable);
         }
 
-        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
-        classNode.accept(writer);
-        return writer.toByteArray();
+        return ClassWriter.COMPUTE_MAXS;
     }
 
-    private void replaceInvokeSpecial(ClassNode clazz, List<MethodNode> toReplace)
+    private void replaceInvokeSpecial(ClassNode clazz, Multimap<String, String> toReplace)
     {
         for (MethodNode method : clazz.methods)
         {
@@ -272,27 +394,99 @@ public class AccessTransformer implements IClassTransformer
                 if (insn.getOpcode() == INVOKESPECIAL)
                 {
                     MethodInsnNode mInsn = (MethodInsnNode) insn;
-                    for (MethodNode n : toReplace)
+                    if (toReplace.containsEntry(mInsn.name, mInsn.desc))
                     {
-                        if (n.name.equals(mInsn.name) && n.desc.equals(mInsn.desc))
-                        {
-                            mInsn.setOpcode(INVOKEVIRTUAL);
-                            break;
-                        }
+                        mInsn.setOpcode(INVOKEVIRTUAL);
                     }
                 }
             }
         }
     }
 
-    private String toBinary(int num)
+    /**
+     * Applies the modifiers of a class while it is copied from a reader to a writer.
+     */
+    private class AccessVisitor extends ClassVisitor
+    {
+        private final String name;
+        private final ClassRules classRules;
+        private final Multimap<String, String> nowOverridable;
+        private final Set<String> matched = Sets.newHashSet();
+
+        AccessVisitor(ClassVisitor cv, String name, ClassRules classRules, Multimap<String, String> nowOverridable)
+        {
+            super(Opcodes.ASM5, cv);
+            this.name = name;
+            this.classRules = classRules;
+            this.nowOverridable = nowOverridable;
+        }
+
+        @Override
+        public void visit(int version, int access, String className, String signature, String superName, String[] interfaces)
+        {
+            int newAccess = apply(access, classRules.classRules);
+            if (DEBUG && !classRules.classRules.isEmpty())
+            {
+                System.out.println(String.format("Class: %s %s -> %s", name, toBinary(access), toBinary(newAccess)));
+            }
+            super.visit(version, newAccess, className, signature, superName, interfaces);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String fieldName, String desc, String signature, Object value)
+        {
+            int newAccess = apply(access, classRules.getField(fieldName, matched));
+            if (DEBUG && newAccess != access)
+            {
+                System.out.println(String.format("Field: %s.%s %s -> %s", name, fieldName, toBinary(access), toBinary(newAccess)));
+            }
+            return super.visitField(newAccess, fieldName, desc, signature, value);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String methodName, String desc, String signature, String[] exceptions)
+        {
+            int newAccess = apply(access, classRules.getMethod(methodName, desc));
+            if (DEBUG && newAccess != access)
+            {
+                System.out.println(String.format("Method: %s.%s%s %s -> %s", name, methodName, desc, toBinary(access), toBinary(newAccess)));
+            }
+            MethodVisitor mv = super.visitMethod(newAccess, methodName, desc, signature, exceptions);
+            if (mv == null || nowOverridable.isEmpty())
+            {
+                return mv;
+            }
+            return new MethodVisitor(Opcodes.ASM5, mv)
+            {
+                @Override
+                public void visitMethodInsn(int opcode, String owner, String insnName, String insnDesc, boolean itf)
+                {
+                    if (opcode == INVOKESPECIAL && nowOverridable.containsEntry(insnName, insnDesc))
+                    {
+                        opcode = INVOKEVIRTUAL;
+                    }
+                    super.visitMethodInsn(opcode, owner, insnName, insnDesc, itf);
+                }
+            };
+        }
+    }
+
+    private static String toBinary(int num)
     {
         return String.format("%16s", Integer.toBinaryString(num)).replace(' ', '0');
     }
 
-    private int getFixedAccess(int access, Modifier target)
+    private static int apply(int access, List<Modifier> mods)
+    {
+        for (Modifier m : mods)
+        {
+            access = getFixedAccess(access, m);
+        }
+        return access;
+    }
+
+    private static int getFixedAccess(int access, Modifier target)
     {
-        target.oldAccess = access;
         int t = target.targetAccess;
         int ret = (access & ~7);
 
@@ -326,7 +520,6 @@ public class AccessTransformer implements IClassTransformer
                 ret &= ~ACC_FINAL;
             }
         }
-        target.newAccess = ret;
         return ret;
     }
 
@@ -0,0 +1,27 @@
+package net.minecraftforge.fml.common.asm.transformers;
+
+import java.util.List;
+
+import net.minecraftforge.fml.relauncher.CoreModManager;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Runs every access transformer, followed by the ModAccessTransformer and ItemStackTransformer,
+ * over a single parse of each class. Registered by the FMLDeobfTweaker in their place.
+ */
+public class AccessTransformerHost extends TransformerHost
+{
+    public AccessTransformerHost()
+    {
+        super(load(AccessTransformerHost.class.getClassLoader(), getTransformers()));
+    }
+
+    public static List<String> getTransformers()
+    {
+        List<String> ret = Lists.newArrayList(CoreModManager.getAccessTransformers());
+        ret.add("net.minecraftforge.fml.common.asm.transformers.ModAccessTransformer");
+        ret.add("net.minecraftforge.fml.common.asm.transformers.ItemStackTransformer");
+        return ret;
+    }
+}
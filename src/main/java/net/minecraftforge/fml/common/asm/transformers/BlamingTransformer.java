@@ -15,14 +15,14 @@ import net.minecraftforge.fml.common.FMLLog;
 
 import org.apache.commons.lang3.JavaVersion;
 import org.apache.commons.lang3.SystemUtils;
-import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
 
 import com.google.common.collect.ImmutableSet;
 
-public class BlamingTransformer implements IClassTransformer
+public class BlamingTransformer implements IClassTransformer, IClassNodeTransformer, IPreScanFilter, IUncachedTransformer
 {
     private static final Map<String, String> classMap = new HashMap<String, String>();
     private static final Set<String> naughtyMods = new HashSet<String>();
@@ -32,12 +32,32 @@ public class BlamingTransformer implements IClassTransformer
     @Override
     public byte[] transform(String name, String transformedName, byte[] bytes)
     {
-        if (bytes == null) { return null; }
+        return TransformerHost.transform(this, name, transformedName, bytes);
+    }
+
+    @Override
+    public boolean accepts(String name, String transformedName, ClassPreScan scan)
+    {
+        // The header is all we need, so the class never has to be parsed
+        checkVersion(scan.getVersion(), scan.getClassName());
+        return false;
+    }
+
+    @Override
+    public int transform(String name, String transformedName, ClassNode classNode)
+    {
+        checkVersion(classNode.version, classNode.name);
+        return UNCHANGED;
+    }
 
-        ClassReader classReader = new ClassReader(bytes);
-        VersionVisitor visitor = new VersionVisitor();
-        classReader.accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG);
-        return bytes;
+    private static void checkVersion(int version, String name)
+    {
+        if( (version == Opcodes.V1_8 && !SystemUtils.isJavaVersionAtLeast(JavaVersion.JAVA_1_8)) ||
+            (version == Opcodes.V1_7 && !SystemUtils.isJavaVersionAtLeast(JavaVersion.JAVA_1_7)) )
+        {
+            if(classMap.containsKey(name)) blame(classMap.get(name), name);
+            else orphanNaughtyClasses.add(name);
+        }
     }
 
     public static void blame(String modId, String cls)
@@ -57,12 +77,7 @@ public class BlamingTransformer implements IClassTransformer
         @Override
         public void visit(int version, int access, String name, String signature, String superName, String[] interfaces)
         {
-            if( (version == Opcodes.V1_8 && !SystemUtils.isJavaVersionAtLeast(JavaVersion.JAVA_1_8)) ||
-                (version == Opcodes.V1_7 && !SystemUtils.isJavaVersionAtLeast(JavaVersion.JAVA_1_7)) )
-            {
-                if(classMap.containsKey(name)) blame(classMap.get(name), name);
-                else orphanNaughtyClasses.add(name);
-            }
+            checkVersion(version, name);
         }
     }
 
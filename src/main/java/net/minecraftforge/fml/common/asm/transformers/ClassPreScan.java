@@ -0,0 +1,158 @@
+package net.minecraftforge.fml.common.asm.transformers;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Answers questions about a class from its header and constant pool, without parsing
+ * fields, methods or code. Used by {@link IPreScanFilter}s to skip classes they would
+ * leave untouched.
+ *
+ * Constant pool entries are compared in their encoded form, so nothing is decoded
+ * unless a query needs it.
+ */
+public class ClassPreScan
+{
+    private static final int UTF8 = 1;
+    private static final int CLASS = 7;
+    private static final int METHOD = 10;
+    private static final int IMETHOD = 11;
+    private static final int NAME_TYPE = 12;
+
+    private final ClassReader reader;
+    private final byte[] b;
+
+    public ClassPreScan(byte[] bytes)
+    {
+        this(new ClassReader(bytes));
+    }
+
+    public ClassPreScan(ClassReader reader)
+    {
+        this.reader = reader;
+        this.b = reader.b;
+    }
+
+    ClassReader getReader()
+    {
+        return reader;
+    }
+
+    /**
+     * The version of the class file, as passed to ClassVisitor.visit.
+     */
+    public int getVersion()
+    {
+        return reader.readInt(4);
+    }
+
+    public String getClassName()
+    {
+        return reader.getClassName();
+    }
+
+    /**
+     * @return The internal name of the super class, or null for java/lang/Object
+     */
+    public String getSuperName()
+    {
+        return reader.getSuperName();
+    }
+
+    /**
+     * Whether the constant pool holds the specified string as a UTF8 entry. Those
+     * include the names and descriptors of everything the class declares or references,
+     * annotation descriptors, and string constants.
+     */
+    public boolean contains(String value)
+    {
+        for (int i = 1; i < reader.getItemCount(); i++)
+        {
+            int offset = reader.getItem(i);
+            if (offset > 0 && b[offset - 1] == UTF8 && equals(offset, value))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the constant pool holds any of the specified strings as a UTF8 entry, see {@link #contains}.
+     */
+    public boolean containsAny(String... values)
+    {
+        for (int i = 1; i < reader.getItemCount(); i++)
+        {
+            int offset = reader.getItem(i);
+            if (offset > 0 && b[offset - 1] == UTF8)
+            {
+                for (String value : values)
+                {
+                    if (equals(offset, value))
+                    {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the class calls, or otherwise refers to, the specified method.
+     *
+     * @param owner Internal name of the class declaring the method
+     */
+    public boolean referencesMethod(String owner, String name, String desc)
+    {
+        for (int i = 1; i < reader.getItemCount(); i++)
+        {
+            int offset = reader.getItem(i);
+            if (offset == 0 || (b[offset - 1] != METHOD && b[offset - 1] != IMETHOD))
+            {
+                continue;
+            }
+            int cls = reader.getItem(reader.readUnsignedShort(offset));
+            int nameType = reader.getItem(reader.readUnsignedShort(offset + 2));
+            if (b[cls - 1] == CLASS && b[nameType - 1] == NAME_TYPE &&
+                equals(reader.getItem(reader.readUnsignedShort(nameType)), name) &&
+                equals(reader.getItem(reader.readUnsignedShort(nameType + 2)), desc) &&
+                equals(reader.getItem(reader.readUnsignedShort(cls)), owner))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the UTF8 entry at the offset with the value, in its modified UTF-8 form.
+     */
+    private boolean equals(int offset, String value)
+    {
+        int length = reader.readUnsignedShort(offset);
+        if (length < value.length())
+        {
+            return false;
+        }
+        int pos = offset + 2;
+        int end = pos + length;
+        for (int x = 0; x < value.length(); x++)
+        {
+            char c = value.charAt(x);
+            if (c >= 0x01 && c <= 0x7F)
+            {
+                if (pos >= end || b[pos++] != c) return false;
+            }
+            else if (c <= 0x7FF)
+            {
+                if (pos + 1 >= end || b[pos++] != (byte)(0xC0 | c >> 6) || b[pos++] != (byte)(0x80 | c & 0x3F)) return false;
+            }
+            else
+            {
+                if (pos + 2 >= end || b[pos++] != (byte)(0xE0 | c >> 12) || b[pos++] != (byte)(0x80 | c >> 6 & 0x3F) || b[pos++] != (byte)(0x80 | c & 0x3F)) return false;
+            }
+        }
+        return pos == end;
+    }
+}
@@ -0,0 +1,41 @@
+package net.minecraftforge.fml.common.asm.transformers;
+
+import net.minecraft.launchwrapper.IClassNameTransformer;
+import net.minecraftforge.fml.common.asm.transformers.deobf.FMLDeobfuscatingRemapper;
+import net.minecraftforge.fml.common.asm.transformers.deobf.FMLRemappingAdapter;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * The {@link AccessTransformerHost} for obfuscated environments, which also does the work of the
+ * {@link DeobfuscationTransformer}: classes are remapped while they are parsed, so the access
+ * transformers see the remapped class without it being written and read again.
+ */
+public class DeobfuscationTransformerHost extends AccessTransformerHost implements IClassNameTransformer
+{
+    @Override
+    protected ClassVisitor getReadAdapter(ClassNode classNode)
+    {
+        return new FMLRemappingAdapter(classNode);
+    }
+
+    @Override
+    protected int getReadFlags()
+    {
+        return ClassReader.EXPAND_FRAMES;
+    }
+
+    @Override
+    public String remapClassName(String name)
+    {
+        return FMLDeobfuscatingRemapper.INSTANCE.map(name.replace('.','/')).replace('/', '.');
+    }
+
+    @Override
+    public String unmapClassName(String name)
+    {
+        return FMLDeobfuscatingRemapper.INSTANCE.unmap(name.replace('.', '/')).replace('/','.');
+    }
+}
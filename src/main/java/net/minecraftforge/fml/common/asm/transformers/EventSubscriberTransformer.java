@@ -5,7 +5,6 @@ import java.util.List;
 
 import net.minecraft.launchwrapper.IClassTransformer;
 
-import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AnnotationNode;
@@ -15,16 +14,23 @@ import org.objectweb.asm.tree.MethodNode;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 
-public class EventSubscriberTransformer implements IClassTransformer
+public class EventSubscriberTransformer implements IClassTransformer, IClassNodeTransformer, IPreScanFilter
 {
     @Override
     public byte[] transform(String name, String transformedName, byte[] basicClass)
     {
-        if (basicClass == null) return null;
+        return TransformerHost.transform(this, name, transformedName, basicClass);
+    }
 
-        ClassNode classNode = new ClassNode();
-        new ClassReader(basicClass).accept(classNode, 0);
+    @Override
+    public boolean accepts(String name, String transformedName, ClassPreScan scan)
+    {
+        return scan.contains(SubscribeEventPredicate.DESC);
+    }
 
+    @Override
+    public int transform(String name, String transformedName, ClassNode classNode)
+    {
         boolean isSubscriber = false;
 
         for (MethodNode methodNode : classNode.methods)
@@ -47,13 +53,10 @@ public class EventSubscriberTransformer implements IClassTransformer
         if (isSubscriber)
         {
             classNode.access = toPublic(classNode.access);
-
-            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
-            classNode.accept(writer);
-            return writer.toByteArray();
+            return ClassWriter.COMPUTE_MAXS;
         }
 
-        return basicClass;
+        return UNCHANGED;
     }
 
     private static int toPublic(int access)
@@ -64,11 +67,12 @@ public class EventSubscriberTransformer implements IClassTransformer
     private static class SubscribeEventPredicate implements Predicate<AnnotationNode>
     {
         static final SubscribeEventPredicate INSTANCE = new SubscribeEventPredicate();
+        static final String DESC = "Lnet/minecraftforge/fml/common/eventhandler/SubscribeEvent;";
 
         @Override
         public boolean apply(AnnotationNode input)
         {
-            return input.desc.equals("Lnet/minecraftforge/fml/common/eventhandler/SubscribeEvent;");
+            return input.desc.equals(DESC);
         }
     }
 }
@@ -14,38 +14,45 @@ import static org.objectweb.asm.Opcodes.F_SAME;
 import static org.objectweb.asm.Opcodes.GETSTATIC;
 import static org.objectweb.asm.Opcodes.IFNULL;
 import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
 import static org.objectweb.asm.Opcodes.NEW;
 import static org.objectweb.asm.Opcodes.PUTSTATIC;
 import static org.objectweb.asm.Opcodes.RETURN;
 import static org.objectweb.asm.Opcodes.IRETURN;
 import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.V1_5;
 import static org.objectweb.asm.Type.VOID_TYPE;
 import static org.objectweb.asm.Type.BOOLEAN_TYPE;
 import static org.objectweb.asm.Type.getMethodDescriptor;
 
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.minecraft.launchwrapper.IClassTransformer;
 import net.minecraftforge.fml.common.eventhandler.Event;
 
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldInsnNode;
 import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.InsnNode;
 import org.objectweb.asm.tree.JumpInsnNode;
 import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.tree.TypeInsnNode;
 import org.objectweb.asm.tree.VarInsnNode;
 
-public class EventSubscriptionTransformer implements IClassTransformer
+public class EventSubscriptionTransformer implements IClassTransformer, IClassNodeTransformer, IPreScanFilter
 {
+    // Whether classes, by internal name, are events. Filled with the super classes of transformed classes
+    private final ConcurrentMap<String, Boolean> eventTypes = new ConcurrentHashMap<String, Boolean>();
+
     public EventSubscriptionTransformer()
     {
     }
@@ -57,19 +64,45 @@ public class EventSubscriptionTransformer implements IClassTransformer
         {
             return bytes;
         }
-        ClassReader cr = new ClassReader(bytes);
-        ClassNode classNode = new ClassNode();
-        cr.accept(classNode, 0);
+        return TransformerHost.transform(this, name, transformedName, bytes);
+    }
+
+    @Override
+    public boolean accepts(String name, String transformedName, ClassPreScan scan)
+    {
+        if (name.equals("net.minecraftforge.fml.common.eventhandler.Event") || name.startsWith("net.minecraft.") || name.indexOf('.') == -1)
+        {
+            return false;
+        }
+        String superName = scan.getSuperName();
+        if (superName == null || superName.startsWith("java/"))
+        {
+            return false;
+        }
+        try
+        {
+            return isEvent(superName);
+        }
+        catch (ClassNotFoundException ex)
+        {
+            return false;
+        }
+    }
+
+    @Override
+    public int transform(String name, String transformedName, ClassNode classNode)
+    {
+        if (name.equals("net.minecraftforge.fml.common.eventhandler.Event") || name.startsWith("net.minecraft.") || name.indexOf('.') == -1)
+        {
+            return UNCHANGED;
+        }
 
         try
         {
             if (buildEvents(classNode))
             {
-                ClassWriter cw = new ClassWriter(COMPUTE_MAXS | COMPUTE_FRAMES);
-                classNode.accept(cw);
-                return cw.toByteArray();
+                return COMPUTE_MAXS | COMPUTE_FRAMES;
             }
-            return bytes;
         }
         catch (ClassNotFoundException ex)
         {
@@ -80,15 +113,26 @@ public class EventSubscriptionTransformer implements IClassTransformer
             e.printStackTrace();
         }
 
-        return bytes;
+        return UNCHANGED;
+    }
+
+    private boolean isEvent(String internalName) throws ClassNotFoundException
+    {
+        Boolean ret = eventTypes.get(internalName);
+        if (ret == null)
+        {
+            // Yes, this recursively loads classes until we get this base class. THIS IS NOT A ISSUE. Coremods should handle re-entry just fine.
+            // If they do not this a COREMOD issue NOT a Forge/LaunchWrapper issue.
+            Class<?> parent = this.getClass().getClassLoader().loadClass(internalName.replace('/', '.'));
+            ret = Event.class.isAssignableFrom(parent);
+            eventTypes.put(internalName, ret);
+        }
+        return ret;
     }
 
     private boolean buildEvents(ClassNode classNode) throws Exception
     {
-        // Yes, this recursively loads classes until we get this base class. THIS IS NOT A ISSUE. Coremods should handle re-entry just fine.
-        // If they do not this a COREMOD issue NOT a Forge/LaunchWrapper issue.
-        Class<?> parent = this.getClass().getClassLoader().loadClass(classNode.superName.replace('/', '.'));
-        if (!Event.class.isAssignableFrom(parent))
+        if (!isEvent(classNode.superName))
         {
             return false;
         }
@@ -190,9 +234,12 @@ public class EventSubscriptionTransformer implements IClassTransformer
          *              {
          *                      return;
          *              }
-         *              LISTENER_LIST = new ListenerList(super.getListenerList());
+         *              LISTENER_LIST = new ListenerList(super.getListenerList(), ThisEvent.class);
          *      }
+         *
+         * Class files older than Java 5 can not load class constants, those use the single argument constructor.
          */
+        boolean bindClass = (classNode.version & 0xFFFF) >= V1_5;
         MethodNode method = new MethodNode(ACC_PROTECTED, "setup", voidDesc, null, null);
         method.instructions.add(new VarInsnNode(ALOAD, 0));
         method.instructions.add(new MethodInsnNode(INVOKESPECIAL, tSuper.getInternalName(), "setup", voidDesc, false));
@@ -206,11 +253,49 @@ public class EventSubscriptionTransformer implements IClassTransformer
         method.instructions.add(new InsnNode(DUP));
         method.instructions.add(new VarInsnNode(ALOAD, 0));
         method.instructions.add(new MethodInsnNode(INVOKESPECIAL, tSuper.getInternalName(), "getListenerList", listDescM, false));
-        method.instructions.add(new MethodInsnNode(INVOKESPECIAL, tList.getInternalName(), "<init>", getMethodDescriptor(VOID_TYPE, tList), false));
+        if (bindClass)
+        {
+            method.instructions.add(new LdcInsnNode(Type.getObjectType(classNode.name)));
+            method.instructions.add(new MethodInsnNode(INVOKESPECIAL, tList.getInternalName(), "<init>", getMethodDescriptor(VOID_TYPE, tList, Type.getType(Class.class)), false));
+        }
+        else
+        {
+            method.instructions.add(new MethodInsnNode(INVOKESPECIAL, tList.getInternalName(), "<init>", getMethodDescriptor(VOID_TYPE, tList), false));
+        }
         method.instructions.add(new FieldInsnNode(PUTSTATIC, classNode.name, "LISTENER_LIST", listDesc));
         method.instructions.add(new InsnNode(RETURN));
         classNode.methods.add(method);
 
+        if (bindClass)
+        {
+            /*Add to the start of the static initializer, so the list can be found without an instance:
+             *      LISTENER_LIST = ListenerList.forSubclass(Parent.class, ThisEvent.class);
+             *
+             * Left null when the parent only has a list once instantiated, setup() creates it then.
+             */
+            InsnList init = new InsnList();
+            init.add(new LdcInsnNode(Type.getObjectType(classNode.superName)));
+            init.add(new LdcInsnNode(Type.getObjectType(classNode.name)));
+            init.add(new MethodInsnNode(INVOKESTATIC, tList.getInternalName(), "forSubclass", getMethodDescriptor(tList, Type.getType(Class.class), Type.getType(Class.class)), false));
+            init.add(new FieldInsnNode(PUTSTATIC, classNode.name, "LISTENER_LIST", listDesc));
+
+            MethodNode clinit = null;
+            for (MethodNode m : classNode.methods)
+            {
+                if (m.name.equals("<clinit>") && m.desc.equals(voidDesc))
+                {
+                    clinit = m;
+                }
+            }
+            if (clinit == null)
+            {
+                clinit = new MethodNode(ACC_STATIC, "<clinit>", voidDesc, null, null);
+                init.add(new InsnNode(RETURN));
+                classNode.methods.add(clinit);
+            }
+            clinit.instructions.insert(init);
+        }
+
         /*Add:
          *      public ListenerList getListenerList()
          *      {
@@ -0,0 +1,37 @@
+package net.minecraftforge.fml.common.asm.transformers;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Runs the class transformers of the FML core plugin over a single parse of each class.
+ * Registered in their place by {@link net.minecraftforge.fml.relauncher.FMLCorePlugin}, in the same order,
+ * after the BlamingTransformer.
+ *
+ * Never cached: the EventSubscriptionTransformer loads the super class of events to decide what to add,
+ * and computes stack frames, which reads the classes the code refers to.
+ */
+public class FMLTransformerHost extends TransformerHost implements IUncachedTransformer
+{
+    /**
+     * Registered ahead of the host rather than in it, as it records the mods shipping classes for a newer
+     * Java, which has to happen for every class, and is kept out of the cache in its own right.
+     */
+    public static final String BLAMING_TRANSFORMER = "net.minecraftforge.fml.common.asm.transformers.BlamingTransformer";
+
+    public static final ImmutableList<String> HOSTED = ImmutableList.of(
+            "net.minecraftforge.fml.common.asm.transformers.MarkerTransformer",
+            "net.minecraftforge.fml.common.asm.transformers.SideTransformer",
+            "net.minecraftforge.fml.common.asm.transformers.EventSubscriptionTransformer",
+            "net.minecraftforge.fml.common.asm.transformers.EventSubscriberTransformer"
+    );
+
+    /**
+     * All the transformers of the FML core plugin, in order, for when the host is disabled.
+     */
+    public static final ImmutableList<String> TRANSFORMERS = ImmutableList.<String>builder().add(BLAMING_TRANSFORMER).addAll(HOSTED).build();
+
+    public FMLTransformerHost()
+    {
+        super(load(FMLTransformerHost.class.getClassLoader(), HOSTED));
+    }
+}
@@ -0,0 +1,20 @@
+package net.minecraftforge.fml.common.asm.transformers;
+
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * A transformer that works on an already parsed class, so a {@link TransformerHost} can run
+ * several of them over one parse and write the result once.
+ */
+public interface IClassNodeTransformer
+{
+    /**
+     * Returned by {@link #transform(String, String, ClassNode)} when the class was not changed.
+     */
+    int UNCHANGED = -1;
+
+    /**
+     * @return The ClassWriter flags needed to write the changed class, or {@link #UNCHANGED}
+     */
+    int transform(String name, String transformedName, ClassNode classNode);
+}
@@ -0,0 +1,14 @@
+package net.minecraftforge.fml.common.asm.transformers;
+
+/**
+ * Implemented by transformers that can tell from a {@link ClassPreScan} that they will leave a class
+ * untouched. Such classes are then neither parsed nor written for them, and when no transformer of
+ * a {@link TransformerHost} needs a class its original bytes are returned as they are.
+ */
+public interface IPreScanFilter
+{
+    /**
+     * @return False if the transformer would certainly not change the class
+     */
+    boolean accepts(String name, String transformedName, ClassPreScan scan);
+}
@@ -0,0 +1,12 @@
+package net.minecraftforge.fml.common.asm.transformers;
+
+import net.minecraft.launchwrapper.IClassTransformer;
+
+/**
+ * Implemented by {@link IClassNodeTransformer}s whose byte based transform streams the class
+ * through a visitor instead of building a tree. A {@link TransformerHost} runs them on the bytes
+ * for as long as no tree has been built, and as a tree pass once one has.
+ */
+public interface IStreamingTransformer extends IClassTransformer
+{
+}
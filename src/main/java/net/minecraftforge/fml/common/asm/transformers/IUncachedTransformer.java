@@ -0,0 +1,13 @@
+package net.minecraftforge.fml.common.asm.transformers;
+
+import net.minecraft.launchwrapper.IClassTransformer;
+
+/**
+ * Implemented by transformers that must see every class as it is loaded, because they do more than
+ * return the transformed bytes, or because their output depends on classes other than the one being
+ * transformed and its supertypes. Their output is never taken from the
+ * {@link net.minecraftforge.fml.common.asm.TransformedClassCache}.
+ */
+public interface IUncachedTransformer extends IClassTransformer
+{
+}
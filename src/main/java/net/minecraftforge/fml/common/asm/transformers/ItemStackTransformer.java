@@ -4,7 +4,6 @@ import java.util.ListIterator;
 
 import net.minecraft.launchwrapper.IClassTransformer;
 
-import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
@@ -14,7 +13,7 @@ import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 
-public class ItemStackTransformer implements IClassTransformer {
+public class ItemStackTransformer implements IClassTransformer, IClassNodeTransformer, IPreScanFilter {
     private static final String ITEM_TYPE = "Lnet/minecraft/item/Item;";
     private static final String GETITEM_DESC = "()"+ ITEM_TYPE;
 
@@ -22,9 +21,18 @@ public class ItemStackTransformer implements IClassTransformer {
     public byte[] transform(String name, String transformedName, byte[] basicClass) {
         if (!"net.minecraft.item.ItemStack".equals(name))
             return basicClass;
-        ClassNode classNode = new ClassNode();
-        ClassReader classReader = new ClassReader(basicClass);
-        classReader.accept(classNode, 0);
+        return TransformerHost.transform(this, name, transformedName, basicClass);
+    }
+
+    @Override
+    public boolean accepts(String name, String transformedName, ClassPreScan scan) {
+        return "net.minecraft.item.ItemStack".equals(name);
+    }
+
+    @Override
+    public int transform(String name, String transformedName, ClassNode classNode) {
+        if (!"net.minecraft.item.ItemStack".equals(name))
+            return UNCHANGED;
 
         FieldNode itemField = null;
         for (FieldNode f : classNode.fields)
@@ -77,9 +85,7 @@ public class ItemStackTransformer implements IClassTransformer {
                 }
             }
         }
-        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
-        classNode.accept(writer);
-        return writer.toByteArray();
+        return ClassWriter.COMPUTE_MAXS;
     }
 
 }
@@ -41,7 +41,7 @@ import com.google.common.collect.Lists;
 import com.google.common.io.LineProcessor;
 import com.google.common.io.Resources;
 
-public class MarkerTransformer implements IClassTransformer
+public class MarkerTransformer implements IClassTransformer, IClassNodeTransformer, IPreScanFilter
 {
     private ListMultimap<String, String> markers = ArrayListMultimap.create();
 
@@ -103,18 +103,25 @@ public class MarkerTransformer implements IClassTransformer
     	if (bytes == null) { return null; }
         if (!markers.containsKey(name)) { return bytes; }
 
-        ClassNode classNode = new ClassNode();
-        ClassReader classReader = new ClassReader(bytes);
-        classReader.accept(classNode, 0);
+        return TransformerHost.transform(this, name, transformedName, bytes);
+    }
+
+    @Override
+    public boolean accepts(String name, String transformedName, ClassPreScan scan)
+    {
+        return markers.containsKey(name);
+    }
+
+    @Override
+    public int transform(String name, String transformedName, ClassNode classNode)
+    {
+        if (!markers.containsKey(name)) { return UNCHANGED; }
 
         for (String marker : markers.get(name))
         {
             classNode.interfaces.add(marker);
         }
-
-        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
-        classNode.accept(writer);
-        return writer.toByteArray();
+        return ClassWriter.COMPUTE_MAXS;
     }
 
     public static void main(String[] args)
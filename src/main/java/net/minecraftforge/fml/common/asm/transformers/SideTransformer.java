@@ -19,7 +19,6 @@ import net.minecraft.launchwrapper.IClassTransformer;
 import net.minecraftforge.fml.relauncher.FMLLaunchHandler;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
-import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AnnotationNode;
@@ -27,19 +26,27 @@ import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
 
-public class SideTransformer implements IClassTransformer
+public class SideTransformer implements IClassTransformer, IClassNodeTransformer, IPreScanFilter
 {
     private static String SIDE = FMLLaunchHandler.side().name();
     private static final boolean DEBUG = false;
+    private static final String SIDEONLY_DESC = Type.getDescriptor(SideOnly.class);
     @Override
     public byte[] transform(String name, String transformedName, byte[] bytes)
     {
-    	if (bytes == null) { return null; }
+        return TransformerHost.transform(this, name, transformedName, bytes);
+    }
 
-        ClassNode classNode = new ClassNode();
-        ClassReader classReader = new ClassReader(bytes);
-        classReader.accept(classNode, 0);
+    @Override
+    public boolean accepts(String name, String transformedName, ClassPreScan scan)
+    {
+        return scan.contains(SIDEONLY_DESC);
+    }
 
+    @Override
+    public int transform(String name, String transformedName, ClassNode classNode)
+    {
+        boolean changed = false;
         if (remove((List<AnnotationNode>)classNode.visibleAnnotations, SIDE))
         {
             if (DEBUG)
@@ -60,6 +67,7 @@ public class SideTransformer implements IClassTransformer
                     System.out.println(String.format("Removing Field: %s.%s", classNode.name, field.name));
                 }
                 fields.remove();
+                changed = true;
             }
         }
         Iterator<MethodNode> methods = classNode.methods.iterator();
@@ -73,12 +81,11 @@ public class SideTransformer implements IClassTransformer
                     System.out.println(String.format("Removing Method: %s.%s%s", classNode.name, method.name, method.desc));
                 }
                 methods.remove();
+                changed = true;
             }
         }
 
-        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
-        classNode.accept(writer);
-        return writer.toByteArray();
+        return changed ? ClassWriter.COMPUTE_MAXS : UNCHANGED;
     }
 
     private boolean remove(List<AnnotationNode> anns, String side)
@@ -89,7 +96,7 @@ public class SideTransformer implements IClassTransformer
         }
         for (AnnotationNode ann : anns)
         {
-            if (ann.desc.equals(Type.getDescriptor(SideOnly.class)))
+            if (ann.desc.equals(SIDEONLY_DESC))
             {
                 if (ann.values != null)
                 {
@@ -1,109 +1,113 @@
 package net.minecraftforge.fml.common.asm.transformers;
 
-import org.objectweb.asm.*;
+import java.util.Iterator;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
 
 import net.minecraft.launchwrapper.IClassTransformer;
 import net.minecraftforge.fml.relauncher.FMLRelaunchLog;
 import net.minecraftforge.fml.relauncher.FMLSecurityManager.ExitTrappedException;
 
-public class TerminalTransformer implements IClassTransformer
+public class TerminalTransformer implements IClassTransformer, IClassNodeTransformer, IPreScanFilter
 {
     @Override
     public byte[] transform(String name, String transformedName, byte[] basicClass)
     {
-        if (basicClass == null) return null;
-        ClassReader reader = new ClassReader(basicClass);
-        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
-
-        ClassVisitor visitor = writer;
-        visitor = new ExitVisitor(visitor);
-
-        reader.accept(visitor, 0);
-        return writer.toByteArray();
+        return TransformerHost.transform(this, name, transformedName, basicClass);
     }
 
-    public static class ExitVisitor extends ClassVisitor
+    @Override
+    public boolean accepts(String name, String transformedName, ClassPreScan scan)
     {
-        private String clsName = null;
-        private static final String callbackOwner = org.objectweb.asm.Type.getInternalName(ExitVisitor.class);
-
-        private ExitVisitor(ClassVisitor cv)
-        {
-            super(Opcodes.ASM5, cv);
-        }
+        return scan.referencesMethod("java/lang/System", "exit", "(I)V") ||
+               scan.referencesMethod("java/lang/Runtime", "exit", "(I)V") ||
+               scan.referencesMethod("java/lang/Runtime", "halt", "(I)V");
+    }
 
-        @Override
-        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces)
-        {
-            super.visit(version, access, name, signature, superName, interfaces);
-            this.clsName = name;
-        }
+    @Override
+    public int transform(String name, String transformedName, ClassNode classNode)
+    {
+        final String clsName = classNode.name;
+        final boolean warn = !(clsName.equals("net/minecraft/client/Minecraft") ||
+                               clsName.equals("net/minecraft/server/dedicated/DedicatedServer") ||
+                               clsName.equals("net/minecraft/server/dedicated/ServerHangWatchdog") ||
+                               clsName.equals("net/minecraft/server/dedicated/ServerHangWatchdog$1") ||
+                               clsName.equals("net/minecraftforge/fml/common/FMLCommonHandler") ||
+                               clsName.startsWith("com/jcraft/jogg/") ||
+                               clsName.startsWith("scala/sys/") ||
+                               clsName.startsWith("net/minecraft/server/gui/MinecraftServerGui")
+                               );
 
-        @Override
-        public MethodVisitor visitMethod(int mAccess, final String mName, final String mDesc, String mSignature, String[] mExceptions)
+        boolean changed = false;
+        for (MethodNode method : classNode.methods)
         {
-            final boolean warn = !(clsName.equals("net/minecraft/client/Minecraft") ||
-                                   clsName.equals("net/minecraft/server/dedicated/DedicatedServer") ||
-                                   clsName.equals("net/minecraft/server/dedicated/ServerHangWatchdog") ||
-                                   clsName.equals("net/minecraft/server/dedicated/ServerHangWatchdog$1") ||
-                                   clsName.equals("net/minecraftforge/fml/common/FMLCommonHandler") ||
-                                   clsName.startsWith("com/jcraft/jogg/") ||
-                                   clsName.startsWith("scala/sys/") ||
-                                   clsName.startsWith("net/minecraft/server/gui/MinecraftServerGui")
-                                   );
-
-            return new MethodVisitor(Opcodes.ASM5, super.visitMethod(mAccess, mName, mDesc, mSignature, mExceptions))
+            for (Iterator<AbstractInsnNode> it = method.instructions.iterator(); it.hasNext();)
             {
-                @Override
-                public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean isIntf)
+                AbstractInsnNode insn = it.next();
+                if (insn.getType() != AbstractInsnNode.METHOD_INSN)
+                {
+                    continue;
+                }
+                MethodInsnNode mInsn = (MethodInsnNode)insn;
+                if (mInsn.getOpcode() == Opcodes.INVOKESTATIC && mInsn.owner.equals("java/lang/System") && mInsn.name.equals("exit") && mInsn.desc.equals("(I)V"))
                 {
-                    if (opcode == Opcodes.INVOKESTATIC && owner.equals("java/lang/System") && name.equals("exit") && desc.equals("(I)V"))
+                    if (warn)
                     {
-                        if (warn)
-                        {
-                            FMLRelaunchLog.warning("=============================================================");
-                            FMLRelaunchLog.warning("MOD HAS DIRECT REFERENCE System.exit() THIS IS NOT ALLOWED REROUTING TO FML!");
-                            FMLRelaunchLog.warning("Offendor: %s.%s%s", ExitVisitor.this.clsName, mName, mDesc);
-                            FMLRelaunchLog.warning("Use FMLCommonHandler.exitJava instead");
-                            FMLRelaunchLog.warning("=============================================================");
-                        }
-                        owner = ExitVisitor.callbackOwner;
-                        name = "systemExitCalled";
+                        warn("System.exit()", clsName, method);
                     }
-                    else if (opcode == Opcodes.INVOKEVIRTUAL && owner.equals("java/lang/Runtime") && name.equals("exit") && desc.equals("(I)V"))
+                    mInsn.owner = ExitVisitor.callbackOwner;
+                    mInsn.name = "systemExitCalled";
+                    changed = true;
+                }
+                else if (mInsn.getOpcode() == Opcodes.INVOKEVIRTUAL && mInsn.owner.equals("java/lang/Runtime") && mInsn.name.equals("exit") && mInsn.desc.equals("(I)V"))
+                {
+                    if (warn)
                     {
-                        if (warn)
-                        {
-                            FMLRelaunchLog.warning("=============================================================");
-                            FMLRelaunchLog.warning("MOD HAS DIRECT REFERENCE Runtime.exit() THIS IS NOT ALLOWED REROUTING TO FML!");
-                            FMLRelaunchLog.warning("Offendor: %s.%s%s", ExitVisitor.this.clsName, mName, mDesc);
-                            FMLRelaunchLog.warning("Use FMLCommonHandler.exitJava instead");
-                            FMLRelaunchLog.warning("=============================================================");
-                        }
-                        opcode = Opcodes.INVOKESTATIC;
-                        owner = ExitVisitor.callbackOwner;
-                        name = "runtimeExitCalled";
-                        desc = "(Ljava/lang/Runtime;I)V";
+                        warn("Runtime.exit()", clsName, method);
                     }
-                    else if (opcode == Opcodes.INVOKEVIRTUAL && owner.equals("java/lang/Runtime") && name.equals("halt") && desc.equals("(I)V"))
+                    mInsn.setOpcode(Opcodes.INVOKESTATIC);
+                    mInsn.owner = ExitVisitor.callbackOwner;
+                    mInsn.name = "runtimeExitCalled";
+                    mInsn.desc = "(Ljava/lang/Runtime;I)V";
+                    changed = true;
+                }
+                else if (mInsn.getOpcode() == Opcodes.INVOKEVIRTUAL && mInsn.owner.equals("java/lang/Runtime") && mInsn.name.equals("halt") && mInsn.desc.equals("(I)V"))
+                {
+                    if (warn)
                     {
-                        if (warn)
-                        {
-                            FMLRelaunchLog.warning("=============================================================");
-                            FMLRelaunchLog.warning("MOD HAS DIRECT REFERENCE Runtime.halt() THIS IS NOT ALLOWED REROUTING TO FML!");
-                            FMLRelaunchLog.warning("Offendor: %s.%s%s", ExitVisitor.this.clsName, mName, mDesc);
-                            FMLRelaunchLog.warning("Use FMLCommonHandler.exitJava instead");
-                            FMLRelaunchLog.warning("=============================================================");
-                        }
-                        opcode = Opcodes.INVOKESTATIC;
-                        owner = ExitVisitor.callbackOwner;
-                        name = "runtimeHaltCalled";
-                        desc = "(Ljava/lang/Runtime;I)V";
+                        warn("Runtime.halt()", clsName, method);
                     }
-
-                    super.visitMethodInsn(opcode, owner, name, desc, isIntf);
+                    mInsn.setOpcode(Opcodes.INVOKESTATIC);
+                    mInsn.owner = ExitVisitor.callbackOwner;
+                    mInsn.name = "runtimeHaltCalled";
+                    mInsn.desc = "(Ljava/lang/Runtime;I)V";
+                    changed = true;
                 }
-            };
+            }
+        }
+        return changed ? ClassWriter.COMPUTE_MAXS : UNCHANGED;
+    }
+
+    private static void warn(String call, String clsName, MethodNode method)
+    {
+        FMLRelaunchLog.warning("=============================================================");
+        FMLRelaunchLog.warning("MOD HAS DIRECT REFERENCE %s THIS IS NOT ALLOWED REROUTING TO FML!", call);
+        FMLRelaunchLog.warning("Offendor: %s.%s%s", clsName, method.name, method.desc);
+        FMLRelaunchLog.warning("Use FMLCommonHandler.exitJava instead");
+        FMLRelaunchLog.warning("=============================================================");
+    }
+
+    public static class ExitVisitor
+    {
+        private static final String callbackOwner = org.objectweb.asm.Type.getInternalName(ExitVisitor.class);
+
+        private ExitVisitor()
+        {
         }
 
         // Intercept System.exit, and check if the caller is allowed to use it, if not wrap it in a ExitTrappedException
@@ -0,0 +1,173 @@
+package net.minecraftforge.fml.common.asm.transformers;
+
+import java.util.List;
+
+import net.minecraft.launchwrapper.IClassTransformer;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+/**
+ * Runs a sequence of transformers as a single transformer, parsing each class once.
+ *
+ * Consecutive {@link IClassNodeTransformer}s share one ClassNode, which is only written back
+ * if one of them changed it, so untouched classes keep their original bytes. Plain transformers
+ * are still supported in between, at the cost of writing and parsing the class around them.
+ * Transformers implementing {@link IPreScanFilter} are skipped for classes they have no interest in,
+ * and a class none of them wants is not parsed at all. {@link IStreamingTransformer}s work on the
+ * bytes until some other transformer needs the tree.
+ */
+public class TransformerHost implements IClassTransformer
+{
+    /**
+     * Whether FML registers its hosts instead of the individual transformers, -Dfml.disableTransformerHost=true turns them off.
+     */
+    public static final boolean ENABLED = !Boolean.parseBoolean(System.getProperty("fml.disableTransformerHost", "false"));
+
+    private final IClassTransformer[] transformers;
+
+    protected TransformerHost(List<IClassTransformer> transformers)
+    {
+        this.transformers = transformers.toArray(new IClassTransformer[transformers.size()]);
+    }
+
+    @Override
+    public byte[] transform(String name, String transformedName, byte[] bytes)
+    {
+        if (bytes == null) { return null; }
+
+        ClassNode classNode = new ClassNode();
+        int flags = IClassNodeTransformer.UNCHANGED;
+        ClassVisitor adapter = getReadAdapter(classNode);
+        if (adapter != null)
+        {
+            // Adapters always rewrite the class, so apply it before anything else sees the class
+            new ClassReader(bytes).accept(adapter, getReadFlags());
+            flags = ClassWriter.COMPUTE_MAXS;
+        }
+        else
+        {
+            classNode = null;
+        }
+
+        // Describes bytes for as long as the tree, if any, has not been changed
+        ClassPreScan scan = null;
+        for (IClassTransformer transformer : transformers)
+        {
+            if (transformer instanceof IClassNodeTransformer)
+            {
+                if (bytes == null && classNode == null) { continue; }
+                if (transformer instanceof IPreScanFilter && flags == IClassNodeTransformer.UNCHANGED)
+                {
+                    if (scan == null) scan = new ClassPreScan(bytes);
+                    if (!((IPreScanFilter)transformer).accepts(name, transformedName, scan)) { continue; }
+                }
+                if (classNode == null && transformer instanceof IStreamingTransformer)
+                {
+                    byte[] transformed = transformer.transform(name, transformedName, bytes);
+                    if (transformed != bytes)
+                    {
+                        bytes = transformed;
+                        scan = null;
+                    }
+                    continue;
+                }
+                if (classNode == null)
+                {
+                    classNode = new ClassNode();
+                    (scan != null ? scan.getReader() : new ClassReader(bytes)).accept(classNode, 0);
+                }
+                flags = merge(flags, ((IClassNodeTransformer)transformer).transform(name, transformedName, classNode));
+            }
+            else
+            {
+                if (classNode != null && flags != IClassNodeTransformer.UNCHANGED)
+                {
+                    bytes = write(classNode, flags);
+                }
+                classNode = null;
+                scan = null;
+                flags = IClassNodeTransformer.UNCHANGED;
+                bytes = transformer.transform(name, transformedName, bytes);
+            }
+        }
+
+        if (classNode != null && flags != IClassNodeTransformer.UNCHANGED)
+        {
+            bytes = write(classNode, flags);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns a visitor applied while the class is first parsed, or null if there is none.
+     * Classes are always written back when an adapter is used.
+     */
+    protected ClassVisitor getReadAdapter(ClassNode classNode)
+    {
+        return null;
+    }
+
+    protected int getReadFlags()
+    {
+        return 0;
+    }
+
+    /**
+     * Runs a single tree transformer on class bytes, for use as a standalone IClassTransformer.
+     */
+    public static byte[] transform(IClassNodeTransformer transformer, String name, String transformedName, byte[] bytes)
+    {
+        if (bytes == null) { return null; }
+
+        ClassReader reader = new ClassReader(bytes);
+        if (transformer instanceof IPreScanFilter && !((IPreScanFilter)transformer).accepts(name, transformedName, new ClassPreScan(reader)))
+        {
+            return bytes;
+        }
+        ClassNode classNode = new ClassNode();
+        reader.accept(classNode, 0);
+        int flags = transformer.transform(name, transformedName, classNode);
+        return flags == IClassNodeTransformer.UNCHANGED ? bytes : write(classNode, flags);
+    }
+
+    /**
+     * Instantiates transformers by name from the class loader that loaded the host,
+     * the same way the LaunchClassLoader does when they are registered.
+     */
+    protected static List<IClassTransformer> load(ClassLoader loader, List<String> names)
+    {
+        List<IClassTransformer> ret = Lists.newArrayList();
+        for (String name : names)
+        {
+            try
+            {
+                ret.add((IClassTransformer)loader.loadClass(name).newInstance());
+            }
+            catch (Exception e)
+            {
+                throw Throwables.propagate(e);
+            }
+        }
+        return ret;
+    }
+
+    private static int merge(int flags, int added)
+    {
+        if (added == IClassNodeTransformer.UNCHANGED) return flags;
+        if (flags == IClassNodeTransformer.UNCHANGED) return added;
+        return flags | added;
+    }
+
+    private static byte[] write(ClassNode classNode, int flags)
+    {
+        ClassWriter writer = new ClassWriter(flags);
+        classNode.accept(writer);
+        return writer.toByteArray();
+    }
+}
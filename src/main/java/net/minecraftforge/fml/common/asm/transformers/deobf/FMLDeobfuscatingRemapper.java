@@ -12,17 +12,24 @@
 
 package net.minecraftforge.fml.common.asm.transformers.deobf;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import net.minecraft.launchwrapper.LaunchClassLoader;
 import net.minecraftforge.fml.common.patcher.ClassPatchManager;
+import net.minecraftforge.fml.relauncher.FMLInjectionData;
+import net.minecraftforge.fml.relauncher.FMLLaunchHandler;
 import net.minecraftforge.fml.relauncher.FMLRelaunchLog;
 
 import org.apache.logging.log4j.Level;
@@ -31,9 +38,8 @@ import org.objectweb.asm.commons.Remapper;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldNode;
 
-import com.google.common.base.CharMatcher;
 import com.google.common.base.Charsets;
-import com.google.common.base.Splitter;
+import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.ImmutableBiMap;
@@ -41,21 +47,31 @@ import com.google.common.collect.ImmutableBiMap.Builder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.common.io.CharSource;
+import com.google.common.io.Resources;
 
 public class FMLDeobfuscatingRemapper extends Remapper {
     public static final FMLDeobfuscatingRemapper INSTANCE = new FMLDeobfuscatingRemapper();
 
     private BiMap<String, String> classNameBiMap;
 
-    private Map<String,Map<String,String>> rawFieldMaps;
-    private Map<String,Map<String,String>> rawMethodMaps;
+    // Member names and descriptors, the field and method tables refer to them by id
+    private StringPool pool;
 
-    private Map<String,Map<String,String>> fieldNameMaps;
-    private Map<String,Map<String,String>> methodNameMaps;
+    private Map<String,MemberTable> rawFieldMaps;
+    private Map<String,MemberTable> rawMethodMaps;
+
+    private Map<String,MemberTable> fieldNameMaps;
+    private Map<String,MemberTable> methodNameMaps;
+
+    // Merged maps of the game classes, read from the flattened mappings instead of being computed
+    private Map<String,MemberTable> flatFieldMaps = ImmutableMap.of();
+    private Map<String,MemberTable> flatMethodMaps = ImmutableMap.of();
 
     private LaunchClassLoader classLoader;
 
@@ -75,77 +91,208 @@ public class FMLDeobfuscatingRemapper extends Remapper {
         {
             File mapData = new File(deobfFileName);
             LZMAInputSupplier zis = new LZMAInputSupplier(new FileInputStream(mapData));
-            CharSource srgSource = zis.asCharSource(Charsets.UTF_8);
-            List<String> srgList = srgSource.readLines();
-            rawMethodMaps = Maps.newHashMap();
-            rawFieldMaps = Maps.newHashMap();
-            Builder<String, String> builder = ImmutableBiMap.<String,String>builder();
-            Splitter splitter = Splitter.on(CharMatcher.anyOf(": ")).omitEmptyStrings().trimResults();
-            for (String line : srgList)
-            {
-                String[] parts = Iterables.toArray(splitter.split(line),String.class);
-                String typ = parts[0];
-                if ("CL".equals(typ))
-                {
-                    parseClass(builder, parts);
-                }
-                else if ("MD".equals(typ) && loadAll)
-                {
-                    parseMethod(parts);
-                }
-                else if ("FD".equals(typ) && loadAll)
-                {
-                    parseField(parts);
-                }
-            }
-            classNameBiMap = builder.build();
+            readMappings(zis.asCharSource(Charsets.UTF_8), loadAll);
         }
         catch (IOException ioe)
         {
             FMLRelaunchLog.log(Level.ERROR, "An error occurred loading the deobfuscation map data", ioe);
         }
-        methodNameMaps = Maps.newHashMapWithExpectedSize(rawMethodMaps.size());
-        fieldNameMaps = Maps.newHashMapWithExpectedSize(rawFieldMaps.size());
+        methodNameMaps = new ConcurrentHashMap<String, MemberTable>(rawMethodMaps.size());
+        fieldNameMaps = new ConcurrentHashMap<String, MemberTable>(rawFieldMaps.size());
 
     }
     public void setup(File mcDir, LaunchClassLoader classLoader, String deobfFileName)
     {
         this.classLoader = classLoader;
+        File flatFile = mcDir == null ? null : new File(new File(mcDir, "classcache"), "deobfuscation.bin");
+        HashCode source = null;
+        if (flatFile != null)
+        {
+            try
+            {
+                source = getSourceHash(deobfFileName);
+                FlattenedMappings flat = FlattenedMappings.load(flatFile, source);
+                if (flat != null)
+                {
+                    setup(flat);
+                    FMLRelaunchLog.fine("Loaded the flattened deobfuscation data of %d classes from %s", flatMethodMaps.size(), flatFile);
+                    return;
+                }
+            }
+            catch (IOException e)
+            {
+                FMLRelaunchLog.log(Level.WARN, e, "The flattened deobfuscation data in %s is unusable, computing it again", flatFile);
+            }
+        }
         try
         {
             InputStream classData = getClass().getResourceAsStream(deobfFileName);
             LZMAInputSupplier zis = new LZMAInputSupplier(classData);
-            CharSource srgSource = zis.asCharSource(Charsets.UTF_8);
-            List<String> srgList = srgSource.readLines();
-            rawMethodMaps = Maps.newHashMap();
-            rawFieldMaps = Maps.newHashMap();
-            Builder<String, String> builder = ImmutableBiMap.<String,String>builder();
-            Splitter splitter = Splitter.on(CharMatcher.anyOf(": ")).omitEmptyStrings().trimResults();
-            for (String line : srgList)
+            readMappings(zis.asCharSource(Charsets.UTF_8), true);
+        }
+        catch (IOException ioe)
+        {
+            FMLRelaunchLog.log(Level.ERROR, ioe, "An error occurred loading the deobfuscation map data");
+        }
+        methodNameMaps = new ConcurrentHashMap<String, MemberTable>(rawMethodMaps.size());
+        fieldNameMaps = new ConcurrentHashMap<String, MemberTable>(rawFieldMaps.size());
+        if (source != null && !classNameBiMap.isEmpty())
+        {
+            flatten(flatFile, source);
+        }
+    }
+
+    /**
+     * Identifies the data the flattened mappings are computed from: the SRG file, the FML and
+     * Minecraft versions, and the side and binary patches, which shape the class hierarchy.
+     */
+    private HashCode getSourceHash(String deobfFileName) throws IOException
+    {
+        URL srg = getClass().getResource(deobfFileName);
+        if (srg == null)
+        {
+            throw new IOException("Missing deobfuscation data " + deobfFileName);
+        }
+        Object[] versions = Arrays.copyOf(FMLInjectionData.data(), 7);
+        versions[6] = FMLLaunchHandler.side();
+        HashCode patches = ClassPatchManager.getPatchArchiveHash();
+        return Hashing.sha1().newHasher()
+                .putString(Joiner.on(':').useForNull("null").join(versions), Charsets.UTF_8)
+                .putBytes(Resources.asByteSource(srg).hash(Hashing.sha1()).asBytes())
+                .putBytes(patches == null ? new byte[0] : patches.asBytes())
+                .hash();
+    }
+
+    /**
+     * Merges the maps of every game class with those of its parents, and saves the result for
+     * later launches.
+     */
+    private void flatten(File flatFile, HashCode source)
+    {
+        long start = System.nanoTime();
+        Map<String,MemberTable> methods = Maps.newHashMap();
+        Map<String,MemberTable> fields = Maps.newHashMap();
+        for (String className : classNameBiMap.keySet())
+        {
+            getMethodMap(className);
+        }
+        for (String className : Sets.union(negativeCacheMethods, negativeCacheFields))
+        {
+            methods.put(className, MemberTable.EMPTY);
+            fields.put(className, MemberTable.EMPTY);
+        }
+        methods.putAll(methodNameMaps);
+        fields.putAll(fieldNameMaps);
+        FlattenedMappings flat = new FlattenedMappings(pool, classNameBiMap, rawMethodMaps, rawFieldMaps, methods, fields);
+        try
+        {
+            flat.save(flatFile, source);
+            FMLRelaunchLog.fine("Saved the flattened deobfuscation data of %d classes to %s in %d ms", methods.size(), flatFile,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        catch (IOException e)
+        {
+            FMLRelaunchLog.log(Level.WARN, e, "Unable to save the flattened deobfuscation data to %s", flatFile);
+        }
+    }
+
+    private void setup(FlattenedMappings flat)
+    {
+        pool = flat.pool;
+        classNameBiMap = flat.classNames;
+        rawMethodMaps = flat.rawMethods;
+        rawFieldMaps = flat.rawFields;
+        flatMethodMaps = flat.methods;
+        flatFieldMaps = flat.fields;
+        methodNameMaps = Maps.newConcurrentMap();
+        fieldNameMaps = Maps.newConcurrentMap();
+    }
+
+    /**
+     * Reads the mappings from SRG text and drops everything computed from earlier mappings,
+     * reading classes through the specified loader. Used by tests.
+     */
+    void setup(CharSource srgSource, LaunchClassLoader classLoader) throws IOException
+    {
+        this.classLoader = classLoader;
+        flatMethodMaps = ImmutableMap.of();
+        flatFieldMaps = ImmutableMap.of();
+        fieldDescriptions.clear();
+        negativeCacheMethods.clear();
+        negativeCacheFields.clear();
+        readMappings(srgSource, true);
+        methodNameMaps = new ConcurrentHashMap<String, MemberTable>(rawMethodMaps.size());
+        fieldNameMaps = new ConcurrentHashMap<String, MemberTable>(rawFieldMaps.size());
+    }
+
+    /**
+     * Reads the SRG data line by line, without holding on to the text.
+     */
+    private void readMappings(CharSource srgSource, boolean loadAll) throws IOException
+    {
+        pool = new StringPool();
+        rawMethodMaps = Maps.newHashMap();
+        rawFieldMaps = Maps.newHashMap();
+        Builder<String, String> builder = ImmutableBiMap.<String,String>builder();
+        BufferedReader reader = srgSource.openBufferedStream();
+        try
+        {
+            String[] parts = new String[5];
+            String line;
+            while ((line = reader.readLine()) != null)
             {
-                String[] parts = Iterables.toArray(splitter.split(line),String.class);
+                int count = split(line, parts);
+                if (count == 0)
+                {
+                    continue;
+                }
                 String typ = parts[0];
-                if ("CL".equals(typ))
+                if ("CL".equals(typ) && count >= 3)
                 {
                     parseClass(builder, parts);
                 }
-                else if ("MD".equals(typ))
+                else if ("MD".equals(typ) && count >= 5 && loadAll)
                 {
                     parseMethod(parts);
                 }
-                else if ("FD".equals(typ))
+                else if ("FD".equals(typ) && count >= 3 && loadAll)
                 {
                     parseField(parts);
                 }
             }
-            classNameBiMap = builder.build();
         }
-        catch (IOException ioe)
+        finally
         {
-            FMLRelaunchLog.log(Level.ERROR, ioe, "An error occurred loading the deobfuscation map data");
+            reader.close();
+        }
+        classNameBiMap = builder.build();
+        pool.trim();
+    }
+
+    /**
+     * Splits an SRG line on colons and spaces, dropping empty parts, into at most parts.length parts.
+     *
+     * @return The number of parts found
+     */
+    private static int split(String line, String[] parts)
+    {
+        int count = 0;
+        int start = -1;
+        for (int x = 0; x <= line.length() && count < parts.length; x++)
+        {
+            char c = x < line.length() ? line.charAt(x) : ' ';
+            boolean separator = c == ':' || Character.isWhitespace(c);
+            if (separator && start >= 0)
+            {
+                parts[count++] = line.substring(start, x);
+                start = -1;
+            }
+            else if (!separator && start < 0)
+            {
+                start = x;
+            }
         }
-        methodNameMaps = Maps.newHashMapWithExpectedSize(rawMethodMaps.size());
-        fieldNameMaps = Maps.newHashMapWithExpectedSize(rawFieldMaps.size());
+        return count;
     }
 
     public boolean isRemappedClass(String className)
@@ -162,54 +309,64 @@ public class FMLDeobfuscatingRemapper extends Remapper {
         String newSrg = parts[2];
         int lastNew = newSrg.lastIndexOf('/');
         String newName = newSrg.substring(lastNew+1);
-        if (!rawFieldMaps.containsKey(cl))
+        MemberTable fields = rawFieldMaps.get(cl);
+        if (fields == null)
         {
-            rawFieldMaps.put(cl, Maps.<String,String>newHashMap());
+            fields = new MemberTable(4);
+            rawFieldMaps.put(cl, fields);
         }
-        rawFieldMaps.get(cl).put(oldName + ":" + getFieldType(cl, oldName), newName);
-        rawFieldMaps.get(cl).put(oldName + ":null", newName);
+        int nameId = pool.intern(oldName);
+        int newNameId = pool.intern(newName);
+        String type = getFieldType(cl, oldName);
+        if (type != null)
+        {
+            fields.put(nameId, pool.intern(type), newNameId);
+        }
+        // Also matches lookups without a descriptor
+        fields.put(nameId, StringPool.NULL, newNameId);
     }
 
     /*
      * Cache the field descriptions for classes so we don't repeatedly reload the same data again and again
+     *
+     * All caches of the remapper are concurrent, classes may be remapped on several threads at once. Values are
+     * computed without locking, threads racing for the same class compute the same result and the first one is kept.
      */
-    private Map<String,Map<String,String>> fieldDescriptions = Maps.newHashMap();
+    private final ConcurrentMap<String,ConcurrentMap<String,String>> fieldDescriptions = Maps.newConcurrentMap();
 
     // Cache null values so we don't waste time trying to recompute classes with no field or method maps
-    private Set<String> negativeCacheMethods = Sets.newHashSet();
-    private Set<String> negativeCacheFields = Sets.newHashSet();
+    private final Set<String> negativeCacheMethods = Sets.newSetFromMap(Maps.<String,Boolean>newConcurrentMap());
+    private final Set<String> negativeCacheFields = Sets.newSetFromMap(Maps.<String,Boolean>newConcurrentMap());
 
     private String getFieldType(String owner, String name)
     {
-        if (fieldDescriptions.containsKey(owner))
+        Map<String,String> descriptions = fieldDescriptions.get(owner);
+        if (descriptions != null)
         {
-            return fieldDescriptions.get(owner).get(name);
+            return descriptions.get(name);
         }
-        synchronized (fieldDescriptions)
+        try
         {
-            try
+            byte[] classBytes = ClassPatchManager.INSTANCE.getPatchedResource(owner, map(owner).replace('/', '.'), classLoader);
+            if (classBytes == null)
             {
-                byte[] classBytes = ClassPatchManager.INSTANCE.getPatchedResource(owner, map(owner).replace('/', '.'), classLoader);
-                if (classBytes == null)
-                {
-                    return null;
-                }
-                ClassReader cr = new ClassReader(classBytes);
-                ClassNode classNode = new ClassNode();
-                cr.accept(classNode, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
-                Map<String,String> resMap = Maps.newHashMap();
-                for (FieldNode fieldNode : (List<FieldNode>) classNode.fields) {
-                    resMap.put(fieldNode.name, fieldNode.desc);
-                }
-                fieldDescriptions.put(owner, resMap);
-                return resMap.get(name);
+                return null;
             }
-            catch (IOException e)
-            {
-                FMLRelaunchLog.log(Level.ERROR,e, "A critical exception occured reading a class file %s", owner);
+            ClassReader cr = new ClassReader(classBytes);
+            ClassNode classNode = new ClassNode();
+            cr.accept(classNode, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            ConcurrentMap<String,String> resMap = Maps.newConcurrentMap();
+            for (FieldNode fieldNode : (List<FieldNode>) classNode.fields) {
+                resMap.put(fieldNode.name, fieldNode.desc);
             }
-            return null;
+            ConcurrentMap<String,String> existing = fieldDescriptions.putIfAbsent(owner, resMap);
+            return (existing != null ? existing : resMap).get(name);
+        }
+        catch (IOException e)
+        {
+            FMLRelaunchLog.log(Level.ERROR,e, "A critical exception occured reading a class file %s", owner);
         }
+        return null;
     }
 
     private void parseClass(Builder<String, String> builder, String[] parts)
@@ -227,11 +384,13 @@ public class FMLDeobfuscatingRemapper extends Remapper {
         String newSrg = parts[3];
         int lastNew = newSrg.lastIndexOf('/');
         String newName = newSrg.substring(lastNew+1);
-        if (!rawMethodMaps.containsKey(cl))
+        MemberTable methods = rawMethodMaps.get(cl);
+        if (methods == null)
         {
-            rawMethodMaps.put(cl, Maps.<String,String>newHashMap());
+            methods = new MemberTable(4);
+            rawMethodMaps.put(cl, methods);
         }
-        rawMethodMaps.get(cl).put(oldName+sig, newName);
+        methods.put(pool.intern(oldName), pool.intern(sig), pool.intern(newName));
     }
 
     @Override
@@ -241,8 +400,8 @@ public class FMLDeobfuscatingRemapper extends Remapper {
         {
             return name;
         }
-        Map<String, String> fieldMap = getFieldMap(owner);
-        return fieldMap!=null && fieldMap.containsKey(name+":"+desc) ? fieldMap.get(name+":"+desc) : name;
+        MemberTable fieldMap = getFieldMap(owner);
+        return lookup(fieldMap, name, desc);
     }
 
     @Override
@@ -291,45 +450,68 @@ public class FMLDeobfuscatingRemapper extends Remapper {
         {
             return name;
         }
-        Map<String, String> methodMap = getMethodMap(owner);
-        String methodDescriptor = name+desc;
-        return methodMap!=null && methodMap.containsKey(methodDescriptor) ? methodMap.get(methodDescriptor) : name;
+        MemberTable methodMap = getMethodMap(owner);
+        return lookup(methodMap, name, desc);
     }
 
-    private Map<String,String> getFieldMap(String className)
+    private String lookup(MemberTable members, String name, String desc)
     {
-        if (!fieldNameMaps.containsKey(className) && !negativeCacheFields.contains(className))
+        if (members == null)
+        {
+            return name;
+        }
+        int mapped = members.get(pool.find(name), pool.find(desc));
+        return mapped == 0 ? name : pool.get(mapped);
+    }
+
+    private MemberTable getFieldMap(String className)
+    {
+        MemberTable flat = flatFieldMaps.get(className);
+        if (flat != null)
+        {
+            return flat;
+        }
+        MemberTable fieldMap = fieldNameMaps.get(className);
+        if (fieldMap == null && !negativeCacheFields.contains(className))
         {
             findAndMergeSuperMaps(className);
-            if (!fieldNameMaps.containsKey(className))
+            fieldMap = fieldNameMaps.get(className);
+            if (fieldMap == null)
             {
                 negativeCacheFields.add(className);
             }
 
             if (DUMP_FIELD_MAPS)
             {
-                FMLRelaunchLog.finer("Field map for %s : %s", className, fieldNameMaps.get(className));
+                FMLRelaunchLog.finer("Field map for %s : %s", className, describe(fieldMap));
             }
         }
-        return fieldNameMaps.get(className);
+        return fieldMap;
     }
 
-    private Map<String,String> getMethodMap(String className)
+    private MemberTable getMethodMap(String className)
     {
-        if (!methodNameMaps.containsKey(className) && !negativeCacheMethods.contains(className))
+        MemberTable flat = flatMethodMaps.get(className);
+        if (flat != null)
+        {
+            return flat;
+        }
+        MemberTable methodMap = methodNameMaps.get(className);
+        if (methodMap == null && !negativeCacheMethods.contains(className))
         {
             findAndMergeSuperMaps(className);
-            if (!methodNameMaps.containsKey(className))
+            methodMap = methodNameMaps.get(className);
+            if (methodMap == null)
             {
                 negativeCacheMethods.add(className);
             }
             if (DUMP_METHOD_MAPS)
             {
-                FMLRelaunchLog.finer("Method map for %s : %s", className, methodNameMaps.get(className));
+                FMLRelaunchLog.finer("Method map for %s : %s", className, describe(methodMap));
             }
 
         }
-        return methodNameMaps.get(className);
+        return methodMap;
     }
 
     private void findAndMergeSuperMaps(String name)
@@ -364,40 +546,76 @@ public class FMLDeobfuscatingRemapper extends Remapper {
         {
             return;
         }
+        // Already merged, from the same class bytes
+        if (flatMethodMaps.containsKey(name))
+        {
+            return;
+        }
 
         List<String> allParents = ImmutableList.<String>builder().add(superName).addAll(Arrays.asList(interfaces)).build();
         // generate maps for all parent objects
         for (String parentThing : allParents)
         {
-            if (!methodNameMaps.containsKey(parentThing))
+            if (!flatMethodMaps.containsKey(parentThing) && !methodNameMaps.containsKey(parentThing))
             {
                 findAndMergeSuperMaps(parentThing);
             }
         }
-        Map<String, String> methodMap = Maps.<String,String>newHashMap();
-        Map<String, String> fieldMap = Maps.<String,String>newHashMap();
+        List<MemberTable> methodMaps = Lists.newArrayListWithCapacity(allParents.size() + 1);
+        List<MemberTable> fieldMaps = Lists.newArrayListWithCapacity(allParents.size() + 1);
         for (String parentThing : allParents)
         {
-            if (methodNameMaps.containsKey(parentThing))
-            {
-                methodMap.putAll(methodNameMaps.get(parentThing));
-            }
-            if (fieldNameMaps.containsKey(parentThing))
+            methodMaps.add(flatMethodMaps.containsKey(parentThing) ? flatMethodMaps.get(parentThing) : methodNameMaps.get(parentThing));
+            fieldMaps.add(flatFieldMaps.containsKey(parentThing) ? flatFieldMaps.get(parentThing) : fieldNameMaps.get(parentThing));
+        }
+        methodMaps.add(rawMethodMaps.get(name));
+        fieldMaps.add(rawFieldMaps.get(name));
+        // Fields first, other threads take a method map as a sign that both maps are in place
+        fieldNameMaps.put(name, merge(fieldMaps));
+        methodNameMaps.put(name, merge(methodMaps));
+//        System.out.printf("Maps: %s %s\n", name, methodMap);
+    }
+
+    /**
+     * Merges tables, later ones taking precedence. Classes that add nothing to their only
+     * mapped parent share its table.
+     */
+    private static MemberTable merge(List<MemberTable> tables)
+    {
+        MemberTable single = null;
+        int size = 0;
+        int count = 0;
+        for (MemberTable table : tables)
+        {
+            if (table != null && table.size() > 0)
             {
-                fieldMap.putAll(fieldNameMaps.get(parentThing));
+                single = table;
+                size += table.size();
+                count++;
             }
         }
-        if (rawMethodMaps.containsKey(name))
+        if (count == 0)
         {
-            methodMap.putAll(rawMethodMaps.get(name));
+            return MemberTable.EMPTY;
         }
-        if (rawFieldMaps.containsKey(name))
+        if (count == 1)
         {
-            fieldMap.putAll(rawFieldMaps.get(name));
+            return single;
         }
-        methodNameMaps.put(name, ImmutableMap.copyOf(methodMap));
-        fieldNameMaps.put(name, ImmutableMap.copyOf(fieldMap));
-//        System.out.printf("Maps: %s %s\n", name, methodMap);
+        MemberTable merged = new MemberTable(size);
+        for (MemberTable table : tables)
+        {
+            if (table != null)
+            {
+                merged.putAll(table);
+            }
+        }
+        return merged;
+    }
+
+    private String describe(MemberTable table)
+    {
+        return table == null ? null : table.toString(pool);
     }
 
     public Set<String> getObfedClasses()
@@ -412,13 +630,21 @@ public class FMLDeobfuscatingRemapper extends Remapper {
         {
             return fType;
         }
-        Map<String,String> newClassMap = fieldDescriptions.get(newType);
+        ConcurrentMap<String,String> newClassMap = fieldDescriptions.get(newType);
         if (newClassMap == null)
         {
-            newClassMap = Maps.newHashMap();
-            fieldDescriptions.put(newType, newClassMap);
+            newClassMap = Maps.newConcurrentMap();
+            ConcurrentMap<String,String> existing = fieldDescriptions.putIfAbsent(newType, newClassMap);
+            if (existing != null)
+            {
+                newClassMap = existing;
+            }
+        }
+        // Concurrent maps hold no nulls, a missing entry reads the same
+        if (fType != null)
+        {
+            newClassMap.put(newName, fType);
         }
-        newClassMap.put(newName, fType);
         return fType;
     }
 }
@@ -0,0 +1,242 @@
+package net.minecraftforge.fml.common.asm.transformers.deobf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.BiMap;
+import com.google.common.collect.ImmutableBiMap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
+import com.google.common.io.Files;
+
+/**
+ * The deobfuscation data with the member maps of the game classes already merged with those of
+ * their parents, as {@link FMLDeobfuscatingRemapper} computes them from the class files.
+ *
+ * Written to the classcache folder on the first launch and read back on later ones, so neither
+ * the SRG data nor any class has to be read to set up the remapper. The file is tied to the SRG
+ * data, FML version, side and binary patches it was computed for, see {@link #load}. Everything is
+ * immutable once read, and safe to share between class loading threads.
+ *
+ * File layout, all numbers big endian, strings as int length and UTF-8 bytes:
+ * <pre>
+ * int magic, int version, 20 byte source hash
+ * string pool: int count, count - 1 strings for ids 1 and up
+ * int class count, obfuscated and deobfuscated name of each
+ * int table count, each table as written by {@link MemberTable#write}
+ * int raw map count, class name, method table, field table of each
+ * int merged map count, class name, method table, field table of each
+ * </pre>
+ * Tables are referred to by their index, -1 for none, and shared between classes with the same maps.
+ */
+final class FlattenedMappings
+{
+    private static final int MAGIC = 0x464D4C44; // FMLD
+    private static final int VERSION = 1;
+    private static final int NONE = -1;
+
+    final StringPool pool;
+    final BiMap<String, String> classNames;
+    final Map<String, MemberTable> rawMethods;
+    final Map<String, MemberTable> rawFields;
+    final Map<String, MemberTable> methods;
+    final Map<String, MemberTable> fields;
+
+    FlattenedMappings(StringPool pool, BiMap<String, String> classNames, Map<String, MemberTable> rawMethods, Map<String, MemberTable> rawFields,
+            Map<String, MemberTable> methods, Map<String, MemberTable> fields)
+    {
+        this.pool = pool;
+        this.classNames = classNames;
+        this.rawMethods = rawMethods;
+        this.rawFields = rawFields;
+        this.methods = methods;
+        this.fields = fields;
+    }
+
+    /**
+     * @param source Hash of the SRG data, FML version, side and binary patches the mappings have to be computed from
+     * @return The mappings, or null if the file is missing or was computed from a different source
+     */
+    static FlattenedMappings load(File file, HashCode source) throws IOException
+    {
+        if (!file.isFile())
+        {
+            return null;
+        }
+        // Read into the heap rather than mapped, a file still mapped could not be replaced on Windows
+        // when it turns out to be stale, until the mapping happens to be collected
+        ByteBuffer buf = ByteBuffer.wrap(Files.toByteArray(file));
+        try
+        {
+            byte[] hash = new byte[20];
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION)
+            {
+                return null;
+            }
+            buf.get(hash);
+            if (!Arrays.equals(hash, source.asBytes()))
+            {
+                return null;
+            }
+            StringPool pool = StringPool.read(buf);
+            ImmutableBiMap.Builder<String, String> classNames = ImmutableBiMap.builder();
+            for (int x = buf.getInt(); x > 0; x--)
+            {
+                classNames.put(readString(buf), readString(buf));
+            }
+            int tableCount = buf.getInt();
+            List<MemberTable> tables = Lists.newArrayListWithCapacity(Math.max(tableCount, 0));
+            for (int x = 0; x < tableCount; x++)
+            {
+                tables.add(MemberTable.read(buf));
+            }
+            ImmutableMap.Builder<String, MemberTable> rawMethods = ImmutableMap.builder();
+            ImmutableMap.Builder<String, MemberTable> rawFields = ImmutableMap.builder();
+            readMaps(buf, tables, rawMethods, rawFields, null);
+            ImmutableMap.Builder<String, MemberTable> methods = ImmutableMap.builder();
+            ImmutableMap.Builder<String, MemberTable> fields = ImmutableMap.builder();
+            readMaps(buf, tables, methods, fields, MemberTable.EMPTY);
+            return new FlattenedMappings(pool, classNames.build(), rawMethods.build(), rawFields.build(), methods.build(), fields.build());
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw new IOException("Truncated flattened mappings", e);
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Duplicate keys, or positions out of range
+            throw new IOException("Corrupt flattened mappings", e);
+        }
+    }
+
+    private static void readMaps(ByteBuffer buf, List<MemberTable> tables, ImmutableMap.Builder<String, MemberTable> methods,
+            ImmutableMap.Builder<String, MemberTable> fields, MemberTable missing) throws IOException
+    {
+        for (int x = buf.getInt(); x > 0; x--)
+        {
+            String name = readString(buf);
+            MemberTable methodTable = table(tables, buf.getInt(), missing);
+            MemberTable fieldTable = table(tables, buf.getInt(), missing);
+            if (methodTable != null) methods.put(name, methodTable);
+            if (fieldTable != null) fields.put(name, fieldTable);
+        }
+    }
+
+    private static MemberTable table(List<MemberTable> tables, int index, MemberTable missing) throws IOException
+    {
+        if (index == NONE)
+        {
+            return missing;
+        }
+        if (index < 0 || index >= tables.size())
+        {
+            throw new IOException("Corrupt flattened mappings");
+        }
+        return tables.get(index);
+    }
+
+    void save(File file, HashCode source) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.write(source.asBytes());
+        pool.write(out);
+        out.writeInt(classNames.size());
+        for (Map.Entry<String, String> e : classNames.entrySet())
+        {
+            writeString(out, e.getKey());
+            writeString(out, e.getValue());
+        }
+
+        Map<MemberTable, Integer> tableIds = new IdentityHashMap<MemberTable, Integer>();
+        List<MemberTable> tables = Lists.newArrayList();
+        for (Map<String, MemberTable> map : Arrays.asList(rawMethods, rawFields, methods, fields))
+        {
+            for (MemberTable table : map.values())
+            {
+                if (table.size() > 0 && !tableIds.containsKey(table))
+                {
+                    tableIds.put(table, tables.size());
+                    tables.add(table);
+                }
+            }
+        }
+        out.writeInt(tables.size());
+        for (MemberTable table : tables)
+        {
+            table.write(out);
+        }
+        writeMaps(out, tableIds, rawMethods, rawFields);
+        writeMaps(out, tableIds, methods, fields);
+        out.flush();
+
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs())
+        {
+            throw new IOException("Could not create " + dir);
+        }
+        File tmp = new File(dir, file.getName() + ".tmp");
+        Files.write(bytes.toByteArray(), tmp);
+        if (file.exists() && !file.delete() || !tmp.renameTo(file))
+        {
+            tmp.delete();
+            throw new IOException("Could not rename " + tmp + " to " + file);
+        }
+    }
+
+    private static void writeMaps(DataOutputStream out, Map<MemberTable, Integer> tableIds, Map<String, MemberTable> methods, Map<String, MemberTable> fields) throws IOException
+    {
+        List<String> names = Lists.newArrayList(methods.keySet());
+        for (String name : fields.keySet())
+        {
+            if (!methods.containsKey(name))
+            {
+                names.add(name);
+            }
+        }
+        out.writeInt(names.size());
+        for (String name : names)
+        {
+            writeString(out, name);
+            out.writeInt(tableId(tableIds, methods.get(name)));
+            out.writeInt(tableId(tableIds, fields.get(name)));
+        }
+    }
+
+    private static int tableId(Map<MemberTable, Integer> tableIds, MemberTable table)
+    {
+        Integer id = table == null ? null : tableIds.get(table);
+        return id == null ? NONE : id;
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer buf) throws IOException
+    {
+        int length = buf.getInt();
+        if (length < 0 || length > buf.remaining())
+        {
+            throw new IOException("Corrupt string in the flattened mappings");
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+}
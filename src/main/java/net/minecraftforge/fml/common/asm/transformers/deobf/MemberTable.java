@@ -0,0 +1,188 @@
+package net.minecraftforge.fml.common.asm.transformers.deobf;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Maps the (name, descriptor) pairs of the fields or methods of a class to their deobfuscated names,
+ * all as {@link StringPool} ids, in an open addressing table of primitive keys.
+ *
+ * Tables are filled while the mappings are set up and not changed once they are handed out.
+ */
+final class MemberTable
+{
+    static final MemberTable EMPTY = new MemberTable(0);
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    MemberTable(int expected)
+    {
+        int capacity = 4;
+        while (capacity < expected * 2)
+        {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        values = new int[capacity];
+    }
+
+    private MemberTable(long[] keys, int[] values, int size)
+    {
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Reads a table written by {@link #write}, the slots are copied as they are.
+     */
+    static MemberTable read(ByteBuffer buf) throws IOException
+    {
+        int capacity = buf.getInt();
+        int size = buf.getInt();
+        if (capacity < 0 || Integer.bitCount(capacity) != 1 || size < 0 || size * 2 > capacity || buf.remaining() < capacity * 12L)
+        {
+            throw new IOException("Corrupt member table");
+        }
+        long[] keys = new long[capacity];
+        int[] values = new int[capacity];
+        buf.asLongBuffer().get(keys);
+        buf.position(buf.position() + capacity * 8);
+        buf.asIntBuffer().get(values);
+        buf.position(buf.position() + capacity * 4);
+        return new MemberTable(keys, values, size);
+    }
+
+    void write(DataOutputStream out) throws IOException
+    {
+        out.writeInt(keys.length);
+        out.writeInt(size);
+        for (long key : keys)
+        {
+            out.writeLong(key);
+        }
+        for (int value : values)
+        {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * @param nameId Id of the member name, never {@link StringPool#NULL}
+     * @param descId Id of the descriptor, {@link StringPool#NULL} for lookups without one
+     * @param value Id of the deobfuscated name
+     */
+    void put(int nameId, int descId, int value)
+    {
+        if ((size + 1) * 2 > keys.length)
+        {
+            rehash(keys.length * 2);
+        }
+        long key = key(nameId, descId);
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key)
+        {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == 0)
+        {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * @return The id of the deobfuscated name, or 0 if the member is not mapped
+     */
+    int get(int nameId, int descId)
+    {
+        if (nameId <= 0 || descId < 0 || size == 0)
+        {
+            return 0;
+        }
+        long key = key(nameId, descId);
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        for (long k = keys[slot]; k != 0; k = keys[slot])
+        {
+            if (k == key)
+            {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * Copies all mappings of the other table, replacing existing ones for the same members.
+     */
+    void putAll(MemberTable other)
+    {
+        for (int x = 0; x < other.keys.length; x++)
+        {
+            long key = other.keys[x];
+            if (key != 0)
+            {
+                put((int)(key >>> 32), (int)key, other.values[x]);
+            }
+        }
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    String toString(StringPool pool)
+    {
+        StringBuilder sb = new StringBuilder("{");
+        for (int x = 0; x < keys.length; x++)
+        {
+            if (keys[x] != 0)
+            {
+                if (sb.length() > 1) sb.append(", ");
+                sb.append(pool.get((int)(keys[x] >>> 32))).append(' ').append(pool.get((int)keys[x])).append('=').append(pool.get(values[x]));
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    private void rehash(int capacity)
+    {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        size = 0;
+        for (int x = 0; x < oldKeys.length; x++)
+        {
+            if (oldKeys[x] != 0)
+            {
+                put((int)(oldKeys[x] >>> 32), (int)oldKeys[x], oldValues[x]);
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MemberTable[" + size + "]";
+    }
+
+    private static long key(int nameId, int descId)
+    {
+        return ((long)nameId << 32) | (descId & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,150 @@
+package net.minecraftforge.fml.common.asm.transformers.deobf;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Assigns small integer ids to the names and descriptors of the deobfuscation data, so mapping
+ * tables can be keyed by numbers instead of concatenated strings.
+ *
+ * Id 0 stands for null. Strings are added while the mappings are read, lookups afterwards only
+ * read the pool and never allocate.
+ */
+final class StringPool
+{
+    static final int NULL = 0;
+    static final int MISSING = -1;
+
+    private String[] strings = new String[1024];
+    private int size = 1;
+    // Open addressing, holds ids, 0 for free slots
+    private int[] table = new int[2048];
+
+    /**
+     * Returns the id of the string, adding it if it is not in the pool yet.
+     */
+    int intern(String value)
+    {
+        if (value == null)
+        {
+            return NULL;
+        }
+        int mask = table.length - 1;
+        int slot = hash(value) & mask;
+        for (int id = table[slot]; id != 0; id = table[slot])
+        {
+            if (strings[id].equals(value))
+            {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == strings.length)
+        {
+            strings = Arrays.copyOf(strings, size * 2);
+        }
+        int id = size++;
+        strings[id] = value;
+        table[slot] = id;
+        if (size * 2 > table.length)
+        {
+            rehash(table.length * 2);
+        }
+        return id;
+    }
+
+    /**
+     * @return The id of the string, or {@link #MISSING} if it is not in the pool
+     */
+    int find(String value)
+    {
+        if (value == null)
+        {
+            return NULL;
+        }
+        int mask = table.length - 1;
+        int slot = hash(value) & mask;
+        for (int id = table[slot]; id != 0; id = table[slot])
+        {
+            if (strings[id].equals(value))
+            {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    String get(int id)
+    {
+        return strings[id];
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Drops the spare capacity once all strings are added.
+     */
+    void trim()
+    {
+        strings = Arrays.copyOf(strings, size);
+    }
+
+    private void rehash(int capacity)
+    {
+        int[] newTable = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 1; id < size; id++)
+        {
+            int slot = hash(strings[id]) & mask;
+            while (newTable[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = id;
+        }
+        table = newTable;
+    }
+
+    /**
+     * Writes the strings in id order, see {@link #read}.
+     */
+    void write(DataOutputStream out) throws IOException
+    {
+        out.writeInt(size);
+        for (int id = 1; id < size; id++)
+        {
+            FlattenedMappings.writeString(out, strings[id]);
+        }
+    }
+
+    static StringPool read(ByteBuffer buf) throws IOException
+    {
+        int count = buf.getInt();
+        if (count < 1)
+        {
+            throw new IOException("Corrupt string pool");
+        }
+        StringPool pool = new StringPool();
+        for (int id = 1; id < count; id++)
+        {
+            if (pool.intern(FlattenedMappings.readString(buf)) != id)
+            {
+                throw new IOException("Duplicate string in the string pool");
+            }
+        }
+        pool.trim();
+        return pool;
+    }
+
+    private static int hash(String value)
+    {
+        int h = value.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
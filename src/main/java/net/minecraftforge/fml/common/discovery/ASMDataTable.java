@@ -12,19 +12,22 @@
 
 package net.minecraftforge.fml.common.discovery;
 
+import java.io.File;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import net.minecraftforge.fml.common.ModContainer;
 
-import com.google.common.base.Predicate;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.collect.SetMultimap;
 
 public class ASMDataTable
@@ -80,56 +83,134 @@ public class ASMDataTable
         }
     }
 
-    private static class ModContainerPredicate implements Predicate<ASMData>
+    /**
+     * The lookups, built from the collected data on first use.
+     */
+    private static class Index
     {
-        private ModContainer container;
-        public ModContainerPredicate(ModContainer container)
-        {
-            this.container = container;
-        }
-        @Override
-        public boolean apply(ASMData data)
+        final ImmutableSetMultimap<String, ASMData> byAnnotation;
+        final ImmutableMap<File, SetMultimap<String, ASMData>> bySource;
+        final ImmutableSetMultimap<String, ASMData> byClass;
+        final ImmutableSetMultimap<String, ASMData> byPackage;
+
+        Index(List<ASMData> data)
         {
-            return container.getSource().equals(data.candidate.getModContainer());
+            ImmutableSetMultimap.Builder<String, ASMData> byAnnotation = ImmutableSetMultimap.builder();
+            ImmutableSetMultimap.Builder<String, ASMData> byClass = ImmutableSetMultimap.builder();
+            ImmutableSetMultimap.Builder<String, ASMData> byPackage = ImmutableSetMultimap.builder();
+            Map<File, ImmutableSetMultimap.Builder<String, ASMData>> bySource = Maps.newHashMap();
+            for (ASMData d : data)
+            {
+                byAnnotation.put(d.annotationName, d);
+                byClass.put(d.className, d);
+                int idx = d.className.lastIndexOf('.');
+                byPackage.put(idx < 0 ? "" : d.className.substring(0, idx), d);
+                File source = d.candidate.getModContainer();
+                ImmutableSetMultimap.Builder<String, ASMData> forSource = bySource.get(source);
+                if (forSource == null)
+                {
+                    forSource = ImmutableSetMultimap.builder();
+                    bySource.put(source, forSource);
+                }
+                forSource.put(d.annotationName, d);
+            }
+            this.byAnnotation = byAnnotation.build();
+            this.byClass = byClass.build();
+            this.byPackage = byPackage.build();
+            ImmutableMap.Builder<File, SetMultimap<String, ASMData>> sources = ImmutableMap.builder();
+            for (Map.Entry<File, ImmutableSetMultimap.Builder<String, ASMData>> e : bySource.entrySet())
+            {
+                sources.put(e.getKey(), e.getValue().build());
+            }
+            this.bySource = sources.build();
         }
     }
-    private SetMultimap<String, ASMData> globalAnnotationData = HashMultimap.create();
-    private Map<ModContainer, SetMultimap<String,ASMData>> containerAnnotationData;
 
-    private List<ModContainer> containers = Lists.newArrayList();
+    // Names repeat across the entries of a class and the classes of a mod
+    private final Interner<String> names = Interners.newWeakInterner();
+    // Collected while the candidates are explored, and handed to the index when it is built. The add
+    // methods are synchronized as the candidates may be explored in parallel, see ModDiscoverer
+    private List<ASMData> data = Lists.newArrayList();
+    private Index index;
+
+    private Set<ModContainer> containers = Sets.newHashSet();
     private SetMultimap<String,ModCandidate> packageMap = HashMultimap.create();
 
+    private synchronized Index index()
+    {
+        if (index == null)
+        {
+            index = new Index(data);
+            data = null;
+        }
+        return index;
+    }
+
+    /**
+     * @return The annotations found in the source of the container, by annotation type,
+     * or null if the container was not discovered
+     */
     public SetMultimap<String,ASMData> getAnnotationsFor(ModContainer container)
     {
-        if (containerAnnotationData == null)
+        Index idx = index();
+        synchronized (this)
         {
-            ImmutableMap.Builder<ModContainer, SetMultimap<String, ASMData>> mapBuilder = ImmutableMap.<ModContainer, SetMultimap<String,ASMData>>builder();
-            for (ModContainer cont : containers)
+            if (!containers.contains(container))
             {
-                Multimap<String, ASMData> values = Multimaps.filterValues(globalAnnotationData, new ModContainerPredicate(cont));
-                mapBuilder.put(cont, ImmutableSetMultimap.copyOf(values));
+                return null;
             }
-            containerAnnotationData = mapBuilder.build();
         }
-        return containerAnnotationData.get(container);
+        SetMultimap<String, ASMData> ret = idx.bySource.get(container.getSource());
+        return ret != null ? ret : ImmutableSetMultimap.<String, ASMData>of();
     }
 
     public Set<ASMData> getAll(String annotation)
     {
-        return globalAnnotationData.get(annotation);
+        return index().byAnnotation.get(annotation);
+    }
+
+    /**
+     * @return The annotations of the type found in the source of the container
+     */
+    public Set<ASMData> getAll(String annotation, ModContainer container)
+    {
+        SetMultimap<String, ASMData> forContainer = getAnnotationsFor(container);
+        return forContainer == null ? ImmutableSet.<ASMData>of() : forContainer.get(annotation);
+    }
+
+    /**
+     * @return The annotations on the class and its members
+     */
+    public Set<ASMData> getAnnotationsForClass(String className)
+    {
+        return index().byClass.get(className);
+    }
+
+    /**
+     * @return The annotations on the classes of the package, and their members
+     */
+    public Set<ASMData> getAnnotationsForPackage(String pkg)
+    {
+        return index().byPackage.get(pkg);
     }
 
-    public void addASMData(ModCandidate candidate, String annotation, String className, String objectName, Map<String,Object> annotationInfo)
+    public synchronized void addASMData(ModCandidate candidate, String annotation, String className, String objectName, Map<String,Object> annotationInfo)
     {
-        globalAnnotationData.put(annotation, new ASMData(candidate, annotation, className, objectName, annotationInfo));
+        if (index != null)
+        {
+            // Added after the first lookup, start collecting again
+            data = Lists.newArrayList(index.byAnnotation.values());
+            index = null;
+        }
+        data.add(new ASMData(candidate, names.intern(annotation), names.intern(className), objectName == null ? null : names.intern(objectName), annotationInfo));
     }
 
-    public void addContainer(ModContainer container)
+    public synchronized void addContainer(ModContainer container)
     {
         this.containers.add(container);
     }
 
-    public void registerPackage(ModCandidate modCandidate, String pkg)
+    public synchronized void registerPackage(ModCandidate modCandidate, String pkg)
     {
         this.packageMap.put(pkg,modCandidate);
     }
@@ -0,0 +1,232 @@
+package net.minecraftforge.fml.common.discovery;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.minecraft.launchwrapper.Launch;
+import net.minecraftforge.fml.common.FMLLog;
+import net.minecraftforge.fml.common.discovery.asm.ASMModParser;
+
+import org.apache.logging.log4j.Level;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * Remembers what {@link JarDiscoverer} found in a mod jar, so an unchanged jar is not scanned again.
+ *
+ * There is one file per jar in the classcache/discovery folder of the game directory, keyed by the
+ * path of the jar and checked against its size and modification time. It holds the mcmod.info file,
+ * and the name and parsed annotations of every class in the order the jar lists them, which are
+ * replayed through the same steps as a scan. Files not used for fml.discoveryCache.maxAge days are
+ * removed at the end of discovery.
+ *
+ * Opt in with -Dfml.discoveryCache=true.
+ */
+public class DiscoveryCache
+{
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("fml.discoveryCache", "false"));
+    private static final long MAX_AGE = TimeUnit.DAYS.toMillis(Long.parseLong(System.getProperty("fml.discoveryCache.maxAge", "30")));
+
+    private static final int MAGIC = 0x464D4C4A; // FMLJ
+    private static final int VERSION = 1;
+
+    private static DiscoveryCache instance;
+    private static boolean failed;
+
+    private final File dir;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicInteger classes = new AtomicInteger();
+
+    /**
+     * What was found in a jar, read back from the cache or recorded while it is scanned.
+     */
+    static class Entry
+    {
+        boolean ignored;
+        byte[] metadata;
+        final List<String> entryNames = Lists.newArrayList();
+        final List<ASMModParser> parsers = Lists.newArrayList();
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final DataOutputStream classData = new DataOutputStream(buffer);
+        private boolean broken;
+
+        /**
+         * Records a class as soon as it is parsed, before anything it holds is handed out.
+         */
+        void addClass(String entryName, ASMModParser parser)
+        {
+            if (broken)
+            {
+                return;
+            }
+            try
+            {
+                classData.writeUTF(entryName);
+                parser.write(classData);
+                entryNames.add(entryName);
+            }
+            catch (IOException e)
+            {
+                FMLLog.log(Level.DEBUG, e, "Unable to cache the class %s, the jar will be scanned again", entryName);
+                broken = true;
+            }
+        }
+    }
+
+    /**
+     * Returns the cache, creating its folder on first use, or null if it is disabled or unusable.
+     */
+    public static synchronized DiscoveryCache instance()
+    {
+        if (instance == null && ENABLED && !failed)
+        {
+            File dir = new File(new File(Launch.minecraftHome == null ? new File(".") : Launch.minecraftHome, "classcache"), "discovery");
+            if (!dir.isDirectory() && !dir.mkdirs())
+            {
+                FMLLog.severe("Unable to create the discovery cache folder %s, it will not be used", dir);
+                failed = true;
+                return null;
+            }
+            instance = new DiscoveryCache(dir);
+        }
+        return instance;
+    }
+
+    private DiscoveryCache(File dir)
+    {
+        this.dir = dir;
+    }
+
+    private File fileFor(File jar)
+    {
+        return new File(dir, Hashing.sha1().hashString(jar.getAbsolutePath(), Charsets.UTF_8).toString() + ".bin");
+    }
+
+    /**
+     * Returns what was found in the jar the last time it was scanned, or null if it was not or has changed since.
+     */
+    Entry load(File jar)
+    {
+        File file = fileFor(jar);
+        if (!file.isFile())
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+        try
+        {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.toByteArray(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(jar.getAbsolutePath()) || in.readLong() != jar.length() || in.readLong() != jar.lastModified())
+            {
+                misses.incrementAndGet();
+                return null;
+            }
+            Entry entry = new Entry();
+            entry.ignored = in.readBoolean();
+            int length = in.readInt();
+            if (length >= 0)
+            {
+                entry.metadata = new byte[length];
+                in.readFully(entry.metadata);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                entry.entryNames.add(in.readUTF());
+                entry.parsers.add(ASMModParser.read(in));
+            }
+            // Keeps the file from being swept while the jar is in use
+            file.setLastModified(System.currentTimeMillis());
+            hits.incrementAndGet();
+            classes.addAndGet(count);
+            return entry;
+        }
+        catch (Exception e)
+        {
+            FMLLog.log(Level.DEBUG, e, "Unable to read the discovery cache of %s, it will be scanned again", jar);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Writes what the complete scan of the jar found.
+     */
+    void save(File jar, Entry entry)
+    {
+        if (entry.broken)
+        {
+            return;
+        }
+        File file = fileFor(jar);
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(entry.buffer.size() + 1024);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(jar.getAbsolutePath());
+            out.writeLong(jar.length());
+            out.writeLong(jar.lastModified());
+            out.writeBoolean(entry.ignored);
+            out.writeInt(entry.metadata == null ? -1 : entry.metadata.length);
+            if (entry.metadata != null)
+            {
+                out.write(entry.metadata);
+            }
+            out.writeInt(entry.entryNames.size());
+            entry.classData.flush();
+            entry.buffer.writeTo(out);
+            out.flush();
+            Files.write(bytes.toByteArray(), tmp);
+            if (!tmp.renameTo(file) && (!file.delete() || !tmp.renameTo(file)))
+            {
+                throw new IOException("Could not replace " + file);
+            }
+        }
+        catch (IOException e)
+        {
+            FMLLog.log(Level.WARN, e, "Unable to write the discovery cache of %s", jar);
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Removes the files of jars that have not been seen for a while, and logs how much the cache was used.
+     */
+    public static synchronized void finish()
+    {
+        if (instance == null)
+        {
+            return;
+        }
+        int removed = 0;
+        long oldest = System.currentTimeMillis() - MAX_AGE;
+        File[] files = instance.dir.listFiles();
+        for (File file : files == null ? new File[0] : files)
+        {
+            if (file.lastModified() < oldest && file.delete())
+            {
+                removed++;
+            }
+        }
+        FMLLog.info("Discovery cache: %d jars read from the cache with %d classes, %d jars scanned, %d stale entries removed",
+                instance.hits.get(), instance.classes.get(), instance.misses.get(), removed);
+        instance.hits.set(0);
+        instance.misses.set(0);
+        instance.classes.set(0);
+    }
+}
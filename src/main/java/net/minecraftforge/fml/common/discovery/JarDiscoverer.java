@@ -12,9 +12,13 @@
 
 package net.minecraftforge.fml.common.discovery;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.List;
 import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 
 import net.minecraftforge.fml.common.FMLLog;
 import net.minecraftforge.fml.common.LoaderException;
@@ -29,6 +33,7 @@ import java.util.regex.Matcher;
 import java.util.zip.ZipEntry;
 
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 
 public class JarDiscoverer implements ITypeDiscoverer
 {
@@ -36,61 +41,93 @@ public class JarDiscoverer implements ITypeDiscoverer
     public List<ModContainer> discover(ModCandidate candidate, ASMDataTable table)
     {
         List<ModContainer> foundMods = Lists.newArrayList();
+        DiscoveryCache cache = DiscoveryCache.instance();
+        DiscoveryCache.Entry cached = cache == null ? null : cache.load(candidate.getModContainer());
+        if (cached != null)
+        {
+            FMLLog.fine("Examining file %s for potential mods, as cached", candidate.getModContainer().getName());
+            if (cached.ignored)
+            {
+                FMLLog.finer("Ignoring coremod or tweak system %s", candidate.getModContainer());
+                return foundMods;
+            }
+            MetadataCollection mc = MetadataCollection.from(cached.metadata == null ? null : new ByteArrayInputStream(cached.metadata), cached.metadata == null ? "" : candidate.getModContainer().getName());
+            for (int i = 0; i < cached.parsers.size(); i++)
+            {
+                addClass(candidate, table, cached.entryNames.get(i), cached.parsers.get(i), mc, foundMods);
+            }
+            return foundMods;
+        }
+        DiscoveryCache.Entry entry = cache == null ? null : new DiscoveryCache.Entry();
         FMLLog.fine("Examining file %s for potential mods", candidate.getModContainer().getName());
+        JarIndex index = JarIndex.open(candidate.getModContainer());
         JarFile jar = null;
         try
         {
-            jar = new JarFile(candidate.getModContainer());
+            jar = index == null ? new JarFile(candidate.getModContainer()) : null;
+            Manifest manifest = index != null ? index.getManifest() : jar.getManifest();
 
-            if (jar.getManifest()!=null && (jar.getManifest().getMainAttributes().get("FMLCorePlugin") != null || jar.getManifest().getMainAttributes().get("TweakClass") != null))
+            if (manifest!=null && (manifest.getMainAttributes().get("FMLCorePlugin") != null || manifest.getMainAttributes().get("TweakClass") != null))
             {
                 FMLLog.finer("Ignoring coremod or tweak system %s", candidate.getModContainer());
+                if (entry != null)
+                {
+                    entry.ignored = true;
+                    cache.save(candidate.getModContainer(), entry);
+                }
                 return foundMods;
             }
-            ZipEntry modInfo = jar.getEntry("mcmod.info");
+            InputStream modInfo = open(index, jar, "mcmod.info");
             MetadataCollection mc = null;
             if (modInfo != null)
             {
                 FMLLog.finer("Located mcmod.info file in file %s", candidate.getModContainer().getName());
-                mc = MetadataCollection.from(jar.getInputStream(modInfo), candidate.getModContainer().getName());
+                byte[] metadata = ByteStreams.toByteArray(modInfo);
+                if (entry != null)
+                {
+                    entry.metadata = metadata;
+                }
+                mc = MetadataCollection.from(new ByteArrayInputStream(metadata), candidate.getModContainer().getName());
             }
             else
             {
                 FMLLog.fine("The mod container %s appears to be missing an mcmod.info file", candidate.getModContainer().getName());
                 mc = MetadataCollection.from(null, "");
             }
-            for (ZipEntry ze : Collections.list(jar.entries()))
+            for (String name : index != null ? index.getEntryNames() : entryNames(jar))
             {
-                if (ze.getName()!=null && ze.getName().startsWith("__MACOSX"))
+                if (name.startsWith("__MACOSX"))
                 {
                     continue;
                 }
-                Matcher match = classFile.matcher(ze.getName());
+                Matcher match = classFile.matcher(name);
                 if (match.matches())
                 {
                     ASMModParser modParser;
                     try
                     {
-                        modParser = new ASMModParser(jar.getInputStream(ze));
-                        candidate.addClassEntry(ze.getName());
+                        modParser = new ASMModParser(open(index, jar, name));
                     }
                     catch (LoaderException e)
                     {
-                        FMLLog.log(Level.ERROR, e, "There was a problem reading the entry %s in the jar %s - probably a corrupt zip", ze.getName(), candidate.getModContainer().getPath());
-                        jar.close();
+                        FMLLog.log(Level.ERROR, e, "There was a problem reading the entry %s in the jar %s - probably a corrupt zip", name, candidate.getModContainer().getPath());
+                        if (jar != null)
+                        {
+                            jar.close();
+                        }
                         throw e;
                     }
-                    modParser.validate();
-                    modParser.sendToTable(table, candidate);
-                    ModContainer container = ModContainerFactory.instance().build(modParser, candidate.getModContainer(), candidate);
-                    if (container!=null)
+                    if (entry != null)
                     {
-                        table.addContainer(container);
-                        foundMods.add(container);
-                        container.bindMetadata(mc);
+                        entry.addClass(name, modParser);
                     }
+                    addClass(candidate, table, name, modParser, mc, foundMods);
                 }
             }
+            if (entry != null)
+            {
+                cache.save(candidate.getModContainer(), entry);
+            }
         }
         catch (Exception e)
         {
@@ -112,4 +149,41 @@ public class JarDiscoverer implements ITypeDiscoverer
         return foundMods;
     }
 
+    private static List<String> entryNames(JarFile jar)
+    {
+        List<String> ret = Lists.newArrayList();
+        for (ZipEntry ze : Collections.list(jar.entries()))
+        {
+            ret.add(ze.getName());
+        }
+        return ret;
+    }
+
+    /**
+     * @return The data of the entry, from the index if the jar has one, or null if there is no such entry
+     */
+    private static InputStream open(JarIndex index, JarFile jar, String name) throws IOException
+    {
+        if (index != null)
+        {
+            return index.getInputStream(name);
+        }
+        ZipEntry ze = jar.getEntry(name);
+        return ze == null ? null : jar.getInputStream(ze);
+    }
+
+    private void addClass(ModCandidate candidate, ASMDataTable table, String entryName, ASMModParser modParser, MetadataCollection mc, List<ModContainer> foundMods)
+    {
+        candidate.addClassEntry(entryName);
+        modParser.validate();
+        modParser.sendToTable(table, candidate);
+        ModContainer container = ModContainerFactory.instance().build(modParser, candidate.getModContainer(), candidate);
+        if (container!=null)
+        {
+            table.addContainer(container);
+            foundMods.add(container);
+            container.bindMetadata(mc);
+        }
+    }
+
 }
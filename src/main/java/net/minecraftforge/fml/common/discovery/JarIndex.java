@@ -0,0 +1,333 @@
+package net.minecraftforge.fml.common.discovery;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import net.minecraftforge.fml.common.FMLLog;
+
+import org.apache.logging.log4j.Level;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Read only view of a jar, memory mapped, with its central directory parsed once into a table of
+ * entry names. Stored entries are read straight from the mapping, deflated ones are inflated from it.
+ *
+ * Indexes are shared through {@link #open}, so a jar read more than once during discovery is only
+ * indexed once, and dropped by {@link #closeAll} when discovery is done. Jars the index does not
+ * handle, such as zip64 files, are left to JarFile.
+ *
+ * Opt in with -Dfml.mappedJars=true.
+ */
+public class JarIndex
+{
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("fml.mappedJars", "false"));
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int END_SIZE = 22;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final ConcurrentMap<File, JarIndex> indexes = new ConcurrentHashMap<File, JarIndex>();
+
+    private final File file;
+    private final ByteBuffer buf;
+    private final List<String> names;
+    private final Map<String, Entry> entries;
+
+    private static class Entry
+    {
+        final int method;
+        final int headerOffset;
+        final int compressedSize;
+        final int size;
+
+        Entry(int method, int headerOffset, int compressedSize, int size)
+        {
+            this.method = method;
+            this.headerOffset = headerOffset;
+            this.compressedSize = compressedSize;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Returns the index of the jar, building it on first use, or null if it is disabled or the jar can't be indexed.
+     */
+    public static JarIndex open(File file)
+    {
+        if (!ENABLED)
+        {
+            return null;
+        }
+        JarIndex ret = indexes.get(file);
+        if (ret == null)
+        {
+            try
+            {
+                ret = new JarIndex(file);
+            }
+            catch (IOException e)
+            {
+                FMLLog.log(Level.DEBUG, e, "Unable to index the jar %s, it will be read as usual", file);
+                return null;
+            }
+            JarIndex existing = indexes.putIfAbsent(file, ret);
+            if (existing != null)
+            {
+                ret = existing;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Drops the shared indexes, their mappings are released once they are no longer referenced.
+     */
+    public static void closeAll()
+    {
+        indexes.clear();
+    }
+
+    private JarIndex(File file) throws IOException
+    {
+        this.file = file;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            long length = raf.length();
+            if (length > Integer.MAX_VALUE)
+            {
+                throw new ZipException("Too large to map");
+            }
+            buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        // The end record is followed by a comment of up to 64k
+        int end = -1;
+        for (int pos = buf.limit() - END_SIZE; pos >= Math.max(0, buf.limit() - END_SIZE - 0xFFFF); pos--)
+        {
+            if (buf.getInt(pos) == END_HEADER)
+            {
+                end = pos;
+                break;
+            }
+        }
+        if (end < 0)
+        {
+            throw new ZipException("No end of central directory");
+        }
+        int count = buf.getShort(end + 10) & 0xFFFF;
+        long offset = buf.getInt(end + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || offset == 0xFFFFFFFFL)
+        {
+            throw new ZipException("Zip64 is not supported");
+        }
+
+        List<String> names = Lists.newArrayListWithCapacity(count);
+        Map<String, Entry> entries = Maps.newHashMapWithExpectedSize(count);
+        int pos = (int)offset;
+        byte[] name = new byte[256];
+        for (int i = 0; i < count; i++)
+        {
+            if (pos + 46 > buf.limit() || buf.getInt(pos) != CENTRAL_HEADER)
+            {
+                throw new ZipException("Invalid central directory entry " + i);
+            }
+            int nameLength = buf.getShort(pos + 28) & 0xFFFF;
+            if (nameLength > name.length)
+            {
+                name = new byte[nameLength];
+            }
+            ByteBuffer dup = buf.duplicate();
+            dup.position(pos + 46);
+            dup.get(name, 0, nameLength);
+            String entryName = new String(name, 0, nameLength, Charsets.UTF_8);
+            int compressedSize = buf.getInt(pos + 20);
+            int size = buf.getInt(pos + 24);
+            int headerOffset = buf.getInt(pos + 42);
+            if (compressedSize < 0 || size < 0 || headerOffset < 0)
+            {
+                throw new ZipException("Zip64 is not supported");
+            }
+            names.add(entryName);
+            entries.put(entryName, new Entry(buf.getShort(pos + 10) & 0xFFFF, headerOffset, compressedSize, size));
+            pos += 46 + nameLength + (buf.getShort(pos + 30) & 0xFFFF) + (buf.getShort(pos + 32) & 0xFFFF);
+        }
+        this.names = Collections.unmodifiableList(names);
+        this.entries = entries;
+    }
+
+    /**
+     * @return The names of the entries, in the order of the central directory, as listed by JarFile.entries
+     */
+    public List<String> getEntryNames()
+    {
+        return names;
+    }
+
+    public boolean hasEntry(String name)
+    {
+        return entries.containsKey(name);
+    }
+
+    public Manifest getManifest() throws IOException
+    {
+        InputStream stream = getInputStream(JarFile.MANIFEST_NAME);
+        return stream == null ? null : new Manifest(stream);
+    }
+
+    /**
+     * @return The data of the entry, or null if there is no such entry
+     */
+    public InputStream getInputStream(String name) throws IOException
+    {
+        Entry entry = entries.get(name);
+        if (entry == null)
+        {
+            return null;
+        }
+        if (entry.method == STORED)
+        {
+            return new BufferInputStream(data(entry, entry.size));
+        }
+        return new ByteArrayInputStream(getBytes(entry));
+    }
+
+    /**
+     * @return The uncompressed data of the entry, or null if there is no such entry
+     */
+    public byte[] getBytes(String name) throws IOException
+    {
+        Entry entry = entries.get(name);
+        return entry == null ? null : getBytes(entry);
+    }
+
+    private byte[] getBytes(Entry entry) throws IOException
+    {
+        byte[] ret = new byte[entry.size];
+        if (entry.method == STORED)
+        {
+            data(entry, entry.size).get(ret);
+            return ret;
+        }
+        if (entry.method != DEFLATED)
+        {
+            throw new ZipException("Unsupported compression method " + entry.method + " in " + file);
+        }
+        // Raw inflation wants a byte past the end of the data
+        byte[] input = new byte[entry.compressedSize + 1];
+        data(entry, entry.compressedSize).get(input, 0, entry.compressedSize);
+        Inflater inflater = new Inflater(true);
+        try
+        {
+            inflater.setInput(input);
+            int read = 0;
+            while (read < ret.length)
+            {
+                int n = inflater.inflate(ret, read, ret.length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    break;
+                }
+                read += n;
+            }
+            if (read != ret.length)
+            {
+                throw new ZipException("Truncated entry in " + file);
+            }
+        }
+        catch (DataFormatException e)
+        {
+            throw new ZipException(e.getMessage());
+        }
+        finally
+        {
+            inflater.end();
+        }
+        return ret;
+    }
+
+    /**
+     * @return A slice of the mapping holding the data of the entry
+     */
+    private ByteBuffer data(Entry entry, int length) throws ZipException
+    {
+        int pos = entry.headerOffset;
+        if (pos + 30 > buf.limit() || buf.getInt(pos) != LOCAL_HEADER)
+        {
+            throw new ZipException("Invalid local header in " + file);
+        }
+        pos += 30 + (buf.getShort(pos + 26) & 0xFFFF) + (buf.getShort(pos + 28) & 0xFFFF);
+        if (pos + length > buf.limit())
+        {
+            throw new ZipException("Truncated entry in " + file);
+        }
+        ByteBuffer ret = buf.duplicate();
+        ret.position(pos);
+        ret.limit(pos + length);
+        return ret.slice();
+    }
+
+    private static class BufferInputStream extends InputStream
+    {
+        private final ByteBuffer buf;
+
+        BufferInputStream(ByteBuffer buf)
+        {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read()
+        {
+            return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+            if (!buf.hasRemaining())
+            {
+                return -1;
+            }
+            len = Math.min(len, buf.remaining());
+            buf.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available()
+        {
+            return buf.remaining();
+        }
+    }
+}
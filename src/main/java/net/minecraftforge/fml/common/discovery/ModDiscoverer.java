@@ -14,6 +14,11 @@ package net.minecraftforge.fml.common.discovery;
 
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -31,11 +36,19 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.ObjectArrays;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class ModDiscoverer
 {
     private static Pattern zipJar = Pattern.compile("(.+).(zip|jar)$");
 
+    /**
+     * Whether the candidates are explored on a pool of threads, -Dfml.parallelDiscovery=true turns it on.
+     * -Dfml.parallelDiscovery.threads sets the number of threads.
+     */
+    public static final boolean PARALLEL = Boolean.parseBoolean(System.getProperty("fml.parallelDiscovery", "false"));
+    private static final int THREADS = Integer.parseInt(System.getProperty("fml.parallelDiscovery.threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+
     private List<ModCandidate> candidates = Lists.newArrayList();
 
     private ASMDataTable dataTable = new ASMDataTable();
@@ -125,6 +138,14 @@ public class ModDiscoverer
     }
 
     public List<ModContainer> identifyMods()
+    {
+        List<ModContainer> modList = PARALLEL && THREADS > 1 && candidates.size() > 1 ? identifyModsParallel() : identifyModsSerial();
+        DiscoveryCache.finish();
+        JarIndex.closeAll();
+        return modList;
+    }
+
+    private List<ModContainer> identifyModsSerial()
     {
         List<ModContainer> modList = Lists.newArrayList();
 
@@ -133,14 +154,7 @@ public class ModDiscoverer
             try
             {
                 List<ModContainer> mods = candidate.explore(dataTable);
-                if (mods.isEmpty() && !candidate.isClasspath())
-                {
-                    nonModLibs.add(candidate.getModContainer());
-                }
-                else
-                {
-                    modList.addAll(mods);
-                }
+                addExplored(candidate, mods, modList);
             }
             catch (LoaderException le)
             {
@@ -155,11 +169,85 @@ public class ModDiscoverer
         return modList;
     }
 
+    /**
+     * Explores every candidate on its own thread, the classes of a candidate are still read in order.
+     * The results are collected in the order of the candidates, so the mods are listed as they would be
+     * by a serial scan.
+     */
+    private List<ModContainer> identifyModsParallel()
+    {
+        List<ModContainer> modList = Lists.newArrayList();
+        int threads = Math.min(THREADS, candidates.size());
+        FMLLog.fine("Exploring %d mod candidates on %d threads", candidates.size(), threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("FML Mod Discovery #%d").setDaemon(true).build());
+        try
+        {
+            List<Future<List<ModContainer>>> results = Lists.newArrayListWithCapacity(candidates.size());
+            for (final ModCandidate candidate : candidates)
+            {
+                results.add(executor.submit(new Callable<List<ModContainer>>()
+                {
+                    @Override
+                    public List<ModContainer> call()
+                    {
+                        return candidate.explore(dataTable);
+                    }
+                }));
+            }
+            for (int i = 0; i < candidates.size(); i++)
+            {
+                ModCandidate candidate = candidates.get(i);
+                try
+                {
+                    addExplored(candidate, results.get(i).get(), modList);
+                }
+                catch (ExecutionException e)
+                {
+                    if (e.getCause() instanceof LoaderException)
+                    {
+                        FMLLog.log(Level.WARN, e.getCause(), "Identified a problem with the mod candidate %s, ignoring this source", candidate.getModContainer());
+                    }
+                    else
+                    {
+                        Throwables.propagate(e.getCause());
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    Throwables.propagate(e);
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        return modList;
+    }
+
+    private void addExplored(ModCandidate candidate, List<ModContainer> mods, List<ModContainer> modList)
+    {
+        if (mods.isEmpty() && !candidate.isClasspath())
+        {
+            nonModLibs.add(candidate.getModContainer());
+        }
+        else
+        {
+            modList.addAll(mods);
+        }
+    }
+
     public ASMDataTable getASMTable()
     {
         return dataTable;
     }
 
+    public List<ModCandidate> getCandidates()
+    {
+        return candidates;
+    }
+
     public List<File> getNonModLibs()
     {
         return nonModLibs;
@@ -12,14 +12,19 @@
 
 package net.minecraftforge.fml.common.discovery.asm;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import net.minecraftforge.fml.common.FMLLog;
 import net.minecraftforge.fml.common.LoaderException;
+import net.minecraftforge.fml.common.asm.transformers.ClassPreScan;
 import net.minecraftforge.fml.common.discovery.ASMDataTable;
 import net.minecraftforge.fml.common.discovery.ModCandidate;
 
@@ -33,6 +38,10 @@ import com.google.common.collect.Lists;
 
 public class ASMModParser
 {
+    /**
+     * Whether classes are checked for annotations before they are parsed, -Dfml.disableDiscoveryPreScan=true turns it off.
+     */
+    private static final boolean PRESCAN = !Boolean.parseBoolean(System.getProperty("fml.disableDiscoveryPreScan", "false"));
 
     private Type asmType;
     private int classVersion;
@@ -46,11 +55,29 @@ public class ASMModParser
     }
 
     public ASMModParser(InputStream stream) throws IOException
+    {
+        this(stream, PRESCAN);
+    }
+
+    /**
+     * @param preScan Whether classes without annotations are only read for their name and super class
+     */
+    ASMModParser(InputStream stream, boolean preScan) throws IOException
     {
         try
         {
             ClassReader reader = new ClassReader(stream);
-            reader.accept(new ModClassVisitor(this), 0);
+            // The names of the annotation attributes are in the constant pool of every class that has
+            // annotations, a class without them only contributes its name and super class
+            ClassPreScan scan = preScan ? new ClassPreScan(reader) : null;
+            if (scan != null && !scan.containsAny("RuntimeVisibleAnnotations", "RuntimeInvisibleAnnotations"))
+            {
+                beginNewTypeName(scan.getClassName(), scan.getVersion(), scan.getSuperName());
+            }
+            else
+            {
+                reader.accept(new ModClassVisitor(this), ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            }
         }
         catch (Exception ex)
         {
@@ -59,6 +86,41 @@ public class ASMModParser
         }
     }
 
+    private ASMModParser()
+    {
+    }
+
+    /**
+     * Writes what was read from the class, {@link #read} gives back an equal parser without the class.
+     */
+    public void write(DataOutput out) throws IOException
+    {
+        out.writeUTF(asmType.getInternalName());
+        out.writeInt(classVersion);
+        ModAnnotation.writeString(out, asmSuperType == null ? null : asmSuperType.getInternalName());
+        ModAnnotation.writeString(out, baseModProperties);
+        out.writeInt(annotations.size());
+        Map<Object, Integer> written = new IdentityHashMap<Object, Integer>();
+        for (ModAnnotation ann : annotations)
+        {
+            ann.write(out, written);
+        }
+    }
+
+    public static ASMModParser read(DataInput in) throws IOException
+    {
+        ASMModParser parser = new ASMModParser();
+        parser.beginNewTypeName(in.readUTF(), in.readInt(), ModAnnotation.readString(in));
+        parser.baseModProperties = ModAnnotation.readString(in);
+        int count = in.readInt();
+        List<Object> read = Lists.newArrayList();
+        for (int i = 0; i < count; i++)
+        {
+            parser.annotations.add(ModAnnotation.read(in, read));
+        }
+        return parser;
+    }
+
     public void beginNewTypeName(String typeQName, int classVersion, String superClassQName)
     {
         this.asmType = Type.getObjectType(typeQName);
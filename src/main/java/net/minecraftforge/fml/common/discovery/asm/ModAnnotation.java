@@ -12,7 +12,13 @@
 
 package net.minecraftforge.fml.common.discovery.asm;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import net.minecraftforge.fml.common.discovery.asm.ASMModParser.AnnotationType;
@@ -25,6 +31,11 @@ import com.google.common.collect.Maps;
 
 public class ModAnnotation
 {
+    // Tags of the annotation values written by write, see DiscoveryCache
+    private static final int STRING = 0, INT = 1, LONG = 2, SHORT = 3, BYTE = 4, CHAR = 5, BOOLEAN = 6, FLOAT = 7, DOUBLE = 8,
+            TYPE = 9, ENUM = 10, LIST = 11, MAP = 12, MAP_REF = 13, ARRAY = 14;
+    private static final Class<?>[] PRIMITIVES = { int.class, long.class, short.class, byte.class, char.class, boolean.class, float.class, double.class };
+
     public class EnumHolder
     {
         private String desc;
@@ -36,6 +47,15 @@ public class ModAnnotation
             this.value = value;
         }
 
+        public String getDesc()
+        {
+            return desc;
+        }
+
+        public String getValue()
+        {
+            return value;
+        }
     }
     AnnotationType type;
     Type asmType;
@@ -117,4 +137,197 @@ public class ModAnnotation
         }
         return child;
     }
+
+    /**
+     * Writes the annotation for {@link #read}. The values maps of child annotations are also listed in the
+     * arrays of their parent, so maps are written once and referred to by their index in written after that.
+     */
+    void write(DataOutput out, Map<Object, Integer> written) throws IOException
+    {
+        out.writeByte(type.ordinal());
+        out.writeUTF(asmType.getDescriptor());
+        writeString(out, member);
+        writeValue(out, values, written);
+    }
+
+    @SuppressWarnings("unchecked")
+    static ModAnnotation read(DataInput in, List<Object> read) throws IOException
+    {
+        AnnotationType type = AnnotationType.values()[in.readByte()];
+        ModAnnotation ann = new ModAnnotation(type, Type.getType(in.readUTF()), readString(in));
+        ann.values = (Map<String, Object>)ann.readValue(in, read);
+        return ann;
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException
+    {
+        out.writeBoolean(value != null);
+        if (value != null)
+        {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readString(DataInput in) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeValue(DataOutput out, Object value, Map<Object, Integer> written) throws IOException
+    {
+        if (value instanceof String)
+        {
+            out.writeByte(STRING);
+            out.writeUTF((String)value);
+        }
+        else if (value instanceof Integer)
+        {
+            out.writeByte(INT);
+            out.writeInt((Integer)value);
+        }
+        else if (value instanceof Long)
+        {
+            out.writeByte(LONG);
+            out.writeLong((Long)value);
+        }
+        else if (value instanceof Short)
+        {
+            out.writeByte(SHORT);
+            out.writeShort((Short)value);
+        }
+        else if (value instanceof Byte)
+        {
+            out.writeByte(BYTE);
+            out.writeByte((Byte)value);
+        }
+        else if (value instanceof Character)
+        {
+            out.writeByte(CHAR);
+            out.writeChar((Character)value);
+        }
+        else if (value instanceof Boolean)
+        {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean)value);
+        }
+        else if (value instanceof Float)
+        {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float)value);
+        }
+        else if (value instanceof Double)
+        {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double)value);
+        }
+        else if (value instanceof Type)
+        {
+            out.writeByte(TYPE);
+            out.writeUTF(((Type)value).getDescriptor());
+        }
+        else if (value instanceof EnumHolder)
+        {
+            out.writeByte(ENUM);
+            writeString(out, ((EnumHolder)value).desc);
+            writeString(out, ((EnumHolder)value).value);
+        }
+        else if (value instanceof List)
+        {
+            List<?> list = (List<?>)value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object o : list)
+            {
+                writeValue(out, o, written);
+            }
+        }
+        else if (value instanceof Map)
+        {
+            Integer id = written.get(value);
+            if (id != null)
+            {
+                out.writeByte(MAP_REF);
+                out.writeInt(id);
+                return;
+            }
+            written.put(value, written.size());
+            Map<?, ?> map = (Map<?, ?>)value;
+            out.writeByte(MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> e : map.entrySet())
+            {
+                writeString(out, (String)e.getKey());
+                writeValue(out, e.getValue(), written);
+            }
+        }
+        else if (value != null && value.getClass().isArray() && value.getClass().getComponentType().isPrimitive())
+        {
+            int length = Array.getLength(value);
+            out.writeByte(ARRAY);
+            out.writeByte(Arrays.asList(PRIMITIVES).indexOf(value.getClass().getComponentType()));
+            out.writeInt(length);
+            for (int i = 0; i < length; i++)
+            {
+                writeValue(out, Array.get(value, i), written);
+            }
+        }
+        else
+        {
+            throw new IOException("Unsupported annotation value " + value);
+        }
+    }
+
+    private Object readValue(DataInput in, List<Object> read) throws IOException
+    {
+        int tag = in.readByte();
+        switch (tag)
+        {
+        case STRING: return in.readUTF();
+        case INT: return in.readInt();
+        case LONG: return in.readLong();
+        case SHORT: return in.readShort();
+        case BYTE: return in.readByte();
+        case CHAR: return in.readChar();
+        case BOOLEAN: return in.readBoolean();
+        case FLOAT: return in.readFloat();
+        case DOUBLE: return in.readDouble();
+        case TYPE: return Type.getType(in.readUTF());
+        case ENUM: return new EnumHolder(readString(in), readString(in));
+        case LIST:
+        {
+            int size = in.readInt();
+            ArrayList<Object> list = Lists.newArrayListWithCapacity(size);
+            for (int i = 0; i < size; i++)
+            {
+                list.add(readValue(in, read));
+            }
+            return list;
+        }
+        case MAP:
+        {
+            int size = in.readInt();
+            Map<String, Object> map = Maps.newHashMap();
+            read.add(map);
+            for (int i = 0; i < size; i++)
+            {
+                String key = readString(in);
+                map.put(key, readValue(in, read));
+            }
+            return map;
+        }
+        case MAP_REF: return read.get(in.readInt());
+        case ARRAY:
+        {
+            Class<?> component = PRIMITIVES[in.readByte()];
+            int length = in.readInt();
+            Object array = Array.newInstance(component, length);
+            for (int i = 0; i < length; i++)
+            {
+                Array.set(array, i, readValue(in, read));
+            }
+            return array;
+        }
+        default: throw new IOException("Unknown annotation value tag " + tag);
+        }
+    }
 }
@@ -0,0 +1,253 @@
+package net.minecraftforge.fml.common.eventhandler;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/**
+ * Compiles a listener array, as built by {@link ListenerList}, into a single class
+ * that calls every subscriber directly. Priority markers become inlined setPhase calls
+ * and the cancellation check is done inline rather than in {@link ASMEventHandler#invoke(Event)}.
+ *
+ * Enabled with -Dfml.compileEventDispatch=true
+ */
+public class ASMEventDispatcher
+{
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("fml.compileEventDispatch", "false"));
+
+    private static int IDs = 0;
+    private static final String HANDLER_DESC = Type.getInternalName(IEventListener.class);
+    private static final String HANDLER_FUNC_DESC = Type.getMethodDescriptor(IEventListener.class.getDeclaredMethods()[0]);
+    private static final String EVENT_DESC = Type.getInternalName(Event.class);
+    private static final String PRIORITY_DESC = Type.getInternalName(EventPriority.class);
+    private static final String EXCEPTION_DESC = Type.getInternalName(DispatchException.class);
+    private static final String LISTENERS_DESC = "[L" + HANDLER_DESC + ";";
+
+    private ASMEventDispatcher(){}
+
+    /**
+     * Thrown by compiled dispatchers when a listener fails, carrying the index
+     * of the listener so the bus can report it like the uncompiled path does.
+     */
+    public static class DispatchException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+        private final IEventListener[] listeners;
+        private final int index;
+
+        public DispatchException(IEventListener[] listeners, int index, Throwable cause)
+        {
+            super(cause);
+            this.listeners = listeners;
+            this.index = index;
+        }
+
+        public IEventListener[] getListeners()
+        {
+            return listeners;
+        }
+
+        public int getIndex()
+        {
+            return index;
+        }
+    }
+
+    public static IEventListener create(IEventListener[] listeners)
+    {
+        Object[] instances = new Object[listeners.length];
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        MethodVisitor mv;
+
+        String name = String.format("%s_%d", ASMEventDispatcher.class.getName(), nextID());
+        String desc = name.replace('.', '/');
+
+        cw.visit(V1_6, ACC_PUBLIC | ACC_SUPER, desc, null, "java/lang/Object", new String[]{ HANDLER_DESC });
+
+        cw.visitSource(".dynamic", null);
+        {
+            cw.visitField(ACC_PUBLIC | ACC_FINAL, "instances", "[Ljava/lang/Object;", null, null).visitEnd();
+            cw.visitField(ACC_PUBLIC | ACC_FINAL, "listeners", LISTENERS_DESC, null, null).visitEnd();
+        }
+        {
+            mv = cw.visitMethod(ACC_PUBLIC, "<init>", "([Ljava/lang/Object;" + LISTENERS_DESC + ")V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitFieldInsn(PUTFIELD, desc, "instances", "[Ljava/lang/Object;");
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitFieldInsn(PUTFIELD, desc, "listeners", LISTENERS_DESC);
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        {
+            /* Generates:
+             *      public void invoke(Event event)
+             *      {
+             *          int index = 0;
+             *          try
+             *          {
+             *              index = 0; event.setPhase(EventPriority.HIGHEST);
+             *              index = 1; if (!event.isCanceled()) ((Target)instances[1]).method((EventType)event);
+             *              index = 2; listeners[2].invoke(event);
+             *              ...
+             *          }
+             *          catch (Throwable t)
+             *          {
+             *              throw new DispatchException(listeners, index, t);
+             *          }
+             *      }
+             */
+            mv = cw.visitMethod(ACC_PUBLIC, "invoke", HANDLER_FUNC_DESC, null, null);
+            mv.visitCode();
+            mv.visitInsn(ICONST_0);
+            mv.visitVarInsn(ISTORE, 2);
+            if (listeners.length > 0)
+            {
+                Label start = new Label();
+                Label end = new Label();
+                Label handler = new Label();
+                mv.visitTryCatchBlock(start, end, handler, "java/lang/Throwable");
+                mv.visitLabel(start);
+                for (int x = 0; x < listeners.length; x++)
+                {
+                    pushInt(mv, x);
+                    mv.visitVarInsn(ISTORE, 2);
+                    IEventListener listener = listeners[x];
+                    if (listener instanceof EventPriority)
+                    {
+                        mv.visitVarInsn(ALOAD, 1);
+                        mv.visitFieldInsn(GETSTATIC, PRIORITY_DESC, ((EventPriority)listener).name(), "L" + PRIORITY_DESC + ";");
+                        mv.visitMethodInsn(INVOKEVIRTUAL, EVENT_DESC, "setPhase", "(L" + PRIORITY_DESC + ";)V", false);
+                    }
+                    else if (listener instanceof ASMEventHandler && canInline((ASMEventHandler)listener))
+                    {
+                        ASMEventHandler asm = (ASMEventHandler)listener;
+                        Method callback = asm.getMethod();
+                        String instType = Type.getInternalName(callback.getDeclaringClass());
+                        String eventType = Type.getInternalName(callback.getParameterTypes()[0]);
+                        instances[x] = asm.getTarget();
+
+                        Label skip = new Label();
+                        if (!asm.receiveCanceled())
+                        {
+                            mv.visitVarInsn(ALOAD, 1);
+                            mv.visitMethodInsn(INVOKEVIRTUAL, EVENT_DESC, "isCanceled", "()Z", false);
+                            mv.visitJumpInsn(IFNE, skip);
+                        }
+                        mv.visitVarInsn(ALOAD, 0);
+                        mv.visitFieldInsn(GETFIELD, desc, "instances", "[Ljava/lang/Object;");
+                        pushInt(mv, x);
+                        mv.visitInsn(AALOAD);
+                        mv.visitTypeInsn(CHECKCAST, instType);
+                        mv.visitVarInsn(ALOAD, 1);
+                        mv.visitTypeInsn(CHECKCAST, eventType);
+                        mv.visitMethodInsn(INVOKEVIRTUAL, instType, callback.getName(), Type.getMethodDescriptor(callback), false);
+                        int size = Type.getReturnType(callback).getSize();
+                        if (size == 1) mv.visitInsn(POP);
+                        else if (size == 2) mv.visitInsn(POP2);
+                        mv.visitLabel(skip);
+                    }
+                    else
+                    {
+                        mv.visitVarInsn(ALOAD, 0);
+                        mv.visitFieldInsn(GETFIELD, desc, "listeners", LISTENERS_DESC);
+                        pushInt(mv, x);
+                        mv.visitInsn(AALOAD);
+                        mv.visitVarInsn(ALOAD, 1);
+                        mv.visitMethodInsn(INVOKEINTERFACE, HANDLER_DESC, "invoke", HANDLER_FUNC_DESC, true);
+                    }
+                }
+                mv.visitLabel(end);
+                mv.visitInsn(RETURN);
+                mv.visitLabel(handler);
+                mv.visitVarInsn(ASTORE, 3);
+                mv.visitTypeInsn(NEW, EXCEPTION_DESC);
+                mv.visitInsn(DUP);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitFieldInsn(GETFIELD, desc, "listeners", LISTENERS_DESC);
+                mv.visitVarInsn(ILOAD, 2);
+                mv.visitVarInsn(ALOAD, 3);
+                mv.visitMethodInsn(INVOKESPECIAL, EXCEPTION_DESC, "<init>", "(" + LISTENERS_DESC + "ILjava/lang/Throwable;)V", false);
+                mv.visitInsn(ATHROW);
+            }
+            else
+            {
+                mv.visitInsn(RETURN);
+            }
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+
+        try
+        {
+            // Each dispatcher gets its own loader so the class can be collected once the list is rebuilt.
+            Class<?> cls = new ASMClassLoader().define(name, cw.toByteArray());
+            return (IEventListener)cls.getConstructor(Object[].class, IEventListener[].class).newInstance(instances, listeners);
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException("Failed to generate event dispatcher " + name, e);
+        }
+    }
+
+    private static boolean canInline(ASMEventHandler handler)
+    {
+        if (!handler.canInline())
+        {
+            return false;
+        }
+        Method method = handler.getMethod();
+        return Modifier.isPublic(method.getModifiers()) && !Modifier.isStatic(method.getModifiers()) &&
+               Modifier.isPublic(method.getDeclaringClass().getModifiers()) && !method.getDeclaringClass().isInterface();
+    }
+
+    private static void pushInt(MethodVisitor mv, int value)
+    {
+        if (value <= 5)
+        {
+            mv.visitInsn(ICONST_0 + value);
+        }
+        else if (value <= Byte.MAX_VALUE)
+        {
+            mv.visitIntInsn(BIPUSH, value);
+        }
+        else if (value <= Short.MAX_VALUE)
+        {
+            mv.visitIntInsn(SIPUSH, value);
+        }
+        else
+        {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private static synchronized int nextID()
+    {
+        return IDs++;
+    }
+
+    private static class ASMClassLoader extends ClassLoader
+    {
+        private ASMClassLoader()
+        {
+            super(ASMClassLoader.class.getClassLoader());
+        }
+
+        public Class<?> define(String name, byte[] data)
+        {
+            return defineClass(name, data, 0, data.length);
+        }
+    }
+}
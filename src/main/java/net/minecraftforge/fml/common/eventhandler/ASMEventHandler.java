@@ -2,16 +2,25 @@ package net.minecraftforge.fml.common.eventhandler;
 
 import static org.objectweb.asm.Opcodes.*;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.minecraftforge.fml.common.ModContainer;
 
 import org.apache.logging.log4j.ThreadContext;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 
@@ -21,18 +30,22 @@ public class ASMEventHandler implements IEventListener
     private static final String HANDLER_DESC = Type.getInternalName(IEventListener.class);
     private static final String HANDLER_FUNC_DESC = Type.getMethodDescriptor(IEventListener.class.getDeclaredMethods()[0]);
     private static final ASMClassLoader LOADER = new ASMClassLoader();
-    private static final HashMap<Method, Class<?>> cache = Maps.newHashMap();
+    private static final ConcurrentMap<Class<?>, Wrapper> cache = new ConcurrentHashMap<Class<?>, Wrapper>();
     private static final boolean GETCONTEXT = Boolean.parseBoolean(System.getProperty("fml.LogContext", "false"));
 
     private final IEventListener handler;
     private final SubscribeEvent subInfo;
+    private final Object target;
+    private final Method method;
     private ModContainer owner;
     private String readable;
 
     public ASMEventHandler(Object target, Method method, ModContainer owner) throws Exception
     {
         this.owner = owner;
-        handler = (IEventListener)createWrapper(method).getConstructor(Object.class).newInstance(target);
+        this.target = target;
+        this.method = method;
+        handler = getWrapper(method).create(target, method);
         subInfo = method.getAnnotation(SubscribeEvent.class);
         readable = "ASM: " + target + " " + method.getName() + Type.getMethodDescriptor(method);
     }
@@ -64,72 +77,199 @@ public class ASMEventHandler implements IEventListener
         return subInfo.priority();
     }
 
-    public Class<?> createWrapper(Method callback)
+    /**
+     * Whether this handler needs the wrapping done in {@link #invoke(Event)}, or
+     * if a generated dispatcher can call the target method directly.
+     */
+    boolean canInline()
     {
-        if (cache.containsKey(callback))
+        return handler != null && !GETCONTEXT;
+    }
+
+    boolean isAsync()
+    {
+        return subInfo.async();
+    }
+
+    boolean receiveCanceled()
+    {
+        return subInfo.receiveCanceled();
+    }
+
+    ModContainer getOwner()
+    {
+        return owner;
+    }
+
+    Object getTarget()
+    {
+        return target;
+    }
+
+    Method getMethod()
+    {
+        return method;
+    }
+
+    /**
+     * Returns the wrapper generated for the declaring class of the callback, generating it
+     * for all subscriber methods of that class if needed.
+     */
+    private static Wrapper getWrapper(Method callback)
+    {
+        Class<?> owner = callback.getDeclaringClass();
+        Wrapper ret = cache.get(owner);
+        if (ret == null)
+        {
+            synchronized (cache)
+            {
+                ret = cache.get(owner);
+                if (ret == null)
+                {
+                    ret = createWrapper(owner);
+                    cache.put(owner, ret);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Generates one listener class able to call every @SubscribeEvent method declared in the class,
+     * selecting the method by the id it was constructed with.
+     */
+    private static Wrapper createWrapper(Class<?> owner)
+    {
+        List<Method> callbacks = Lists.newArrayList();
+        for (Method method : owner.getDeclaredMethods())
         {
-            return cache.get(callback);
+            Class<?>[] params = method.getParameterTypes();
+            if (method.isAnnotationPresent(SubscribeEvent.class) && params.length == 1 && Event.class.isAssignableFrom(params[0]))
+            {
+                callbacks.add(method);
+            }
         }
+        // Stable ids regardless of reflection order
+        Collections.sort(callbacks, new Comparator<Method>()
+        {
+            @Override
+            public int compare(Method o1, Method o2)
+            {
+                return getKey(o1).compareTo(getKey(o2));
+            }
+        });
 
         ClassWriter cw = new ClassWriter(0);
         MethodVisitor mv;
 
-        String name = getUniqueName(callback);
+        String name = getUniqueName(owner);
         String desc = name.replace('.',  '/');
-        String instType = Type.getInternalName(callback.getDeclaringClass());
-        String eventType = Type.getInternalName(callback.getParameterTypes()[0]);
-
-        /*
-        System.out.println("Name:     " + name);
-        System.out.println("Desc:     " + desc);
-        System.out.println("InstType: " + instType);
-        System.out.println("Callback: " + callback.getName() + Type.getMethodDescriptor(callback));
-        System.out.println("Event:    " + eventType);
-        */
+        String instType = Type.getInternalName(owner);
 
         cw.visit(V1_6, ACC_PUBLIC | ACC_SUPER, desc, null, "java/lang/Object", new String[]{ HANDLER_DESC });
 
         cw.visitSource(".dynamic", null);
         {
             cw.visitField(ACC_PUBLIC, "instance", "Ljava/lang/Object;", null, null).visitEnd();
+            cw.visitField(ACC_PUBLIC, "id", "I", null, null).visitEnd();
         }
         {
-            mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(Ljava/lang/Object;)V", null, null);
+            mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(Ljava/lang/Object;I)V", null, null);
             mv.visitCode();
             mv.visitVarInsn(ALOAD, 0);
             mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
             mv.visitVarInsn(ALOAD, 0);
             mv.visitVarInsn(ALOAD, 1);
             mv.visitFieldInsn(PUTFIELD, desc, "instance", "Ljava/lang/Object;");
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ILOAD, 2);
+            mv.visitFieldInsn(PUTFIELD, desc, "id", "I");
             mv.visitInsn(RETURN);
-            mv.visitMaxs(2, 2);
+            mv.visitMaxs(2, 3);
             mv.visitEnd();
         }
         {
             mv = cw.visitMethod(ACC_PUBLIC, "invoke", HANDLER_FUNC_DESC, null, null);
             mv.visitCode();
-            mv.visitVarInsn(ALOAD, 0);
-            mv.visitFieldInsn(GETFIELD, desc, "instance", "Ljava/lang/Object;");
-            mv.visitTypeInsn(CHECKCAST, instType);
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitTypeInsn(CHECKCAST, eventType);
-            mv.visitMethodInsn(INVOKEVIRTUAL, instType, callback.getName(), Type.getMethodDescriptor(callback), false);
+            Label dflt = new Label();
+            Label[] labels = new Label[callbacks.size()];
+            for (int x = 0; x < labels.length; x++)
+            {
+                labels[x] = new Label();
+            }
+            if (labels.length > 0)
+            {
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitFieldInsn(GETFIELD, desc, "id", "I");
+                mv.visitTableSwitchInsn(0, labels.length - 1, dflt, labels);
+            }
+            for (int x = 0; x < labels.length; x++)
+            {
+                Method callback = callbacks.get(x);
+                mv.visitLabel(labels[x]);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitFieldInsn(GETFIELD, desc, "instance", "Ljava/lang/Object;");
+                mv.visitTypeInsn(CHECKCAST, instType);
+                mv.visitVarInsn(ALOAD, 1);
+                mv.visitTypeInsn(CHECKCAST, Type.getInternalName(callback.getParameterTypes()[0]));
+                mv.visitMethodInsn(INVOKEVIRTUAL, instType, callback.getName(), Type.getMethodDescriptor(callback), false);
+                mv.visitInsn(RETURN);
+            }
+            mv.visitLabel(dflt);
             mv.visitInsn(RETURN);
-            mv.visitMaxs(2, 2);
+            mv.visitMaxs(3, 2);
             mv.visitEnd();
         }
         cw.visitEnd();
-        Class<?> ret = LOADER.define(name, cw.toByteArray());
-        cache.put(callback, ret);
-        return ret;
+
+        Map<String, Integer> ids = Maps.newHashMap();
+        for (int x = 0; x < callbacks.size(); x++)
+        {
+            ids.put(getKey(callbacks.get(x)), x);
+        }
+        return new Wrapper(LOADER.define(name, cw.toByteArray()), ids);
+    }
+
+    private static String getKey(Method method)
+    {
+        return method.getName() + Type.getMethodDescriptor(method);
     }
 
-    private String getUniqueName(Method callback)
+    private static synchronized String getUniqueName(Class<?> owner)
     {
-        return String.format("%s_%d_%s_%s_%s", getClass().getName(), IDs++,
-                callback.getDeclaringClass().getSimpleName(),
-                callback.getName(),
-                callback.getParameterTypes()[0].getSimpleName());
+        return String.format("%s_%d_%s", ASMEventHandler.class.getName(), IDs++, owner.getSimpleName());
+    }
+
+    /**
+     * A generated listener class, and the ids of the methods it can call.
+     */
+    private static class Wrapper
+    {
+        private final Constructor<?> ctr;
+        private final Map<String, Integer> ids;
+
+        private Wrapper(Class<?> cls, Map<String, Integer> ids)
+        {
+            try
+            {
+                this.ctr = cls.getConstructor(Object.class, int.class);
+            }
+            catch (NoSuchMethodException e)
+            {
+                throw Throwables.propagate(e);
+            }
+            this.ids = ids;
+        }
+
+        private IEventListener create(Object target, Method callback) throws Exception
+        {
+            Integer id = ids.get(getKey(callback));
+            if (id == null)
+            {
+                throw new IllegalArgumentException("Method " + callback + " is not a valid event handler");
+            }
+            return (IEventListener)ctr.newInstance(target, id);
+        }
     }
 
     private static class ASMClassLoader extends ClassLoader
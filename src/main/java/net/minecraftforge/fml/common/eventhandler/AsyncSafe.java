@@ -0,0 +1,15 @@
+package net.minecraftforge.fml.common.eventhandler;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an event type whose listeners may be called from any thread, allowing it to be
+ * posted with {@link EventBus#postAsync(Event)}. Not inherited by subclasses.
+ */
+@Retention(value = RUNTIME)
+@Target(value = TYPE)
+public @interface AsyncSafe{}
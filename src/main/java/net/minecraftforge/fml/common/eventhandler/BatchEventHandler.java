@@ -0,0 +1,101 @@
+package net.minecraftforge.fml.common.eventhandler;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.minecraftforge.fml.common.ModContainer;
+
+import org.apache.logging.log4j.ThreadContext;
+import org.objectweb.asm.Type;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Listener for a @SubscribeEvent method taking a List of events, see {@link EventBus#postBatch(List)}.
+ * Events posted one at a time are delivered as a list of one.
+ *
+ * Called reflectively, the call is made once per batch.
+ */
+public class BatchEventHandler implements IEventListener
+{
+    private static final boolean GETCONTEXT = Boolean.parseBoolean(System.getProperty("fml.LogContext", "false"));
+
+    private final Object target;
+    private final Method method;
+    private final SubscribeEvent subInfo;
+    private ModContainer owner;
+    private String readable;
+
+    public BatchEventHandler(Object target, Method method, ModContainer owner)
+    {
+        this.target = target;
+        this.method = method;
+        this.owner = owner;
+        method.setAccessible(true);
+        subInfo = method.getAnnotation(SubscribeEvent.class);
+        readable = "Batch: " + target + " " + method.getName() + Type.getMethodDescriptor(method);
+    }
+
+    @Override
+    public void invoke(Event event)
+    {
+        if (!event.isCancelable() || !event.isCanceled() || subInfo.receiveCanceled())
+        {
+            call(Collections.singletonList(event));
+        }
+    }
+
+    public void invokeBatch(List<? extends Event> events)
+    {
+        List<Event> accepted = new ArrayList<Event>(events.size());
+        for (Event event : events)
+        {
+            if (!event.isCancelable() || !event.isCanceled() || subInfo.receiveCanceled())
+            {
+                accepted.add(event);
+            }
+        }
+        if (!accepted.isEmpty())
+        {
+            call(Collections.unmodifiableList(accepted));
+        }
+    }
+
+    private void call(List<Event> events)
+    {
+        if (GETCONTEXT)
+        {
+            ThreadContext.put("mod", owner == null ? "" : owner.getName());
+        }
+        try
+        {
+            method.invoke(target, events);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw Throwables.propagate(e.getCause());
+        }
+        catch (IllegalAccessException e)
+        {
+            throw Throwables.propagate(e);
+        }
+        finally
+        {
+            if (GETCONTEXT)
+                ThreadContext.remove("mod");
+        }
+    }
+
+    public EventPriority getPriority()
+    {
+        return subInfo.priority();
+    }
+
+    public String toString()
+    {
+        return readable;
+    }
+}
@@ -30,7 +30,7 @@ public class Event
 
     private boolean isCanceled = false;
     private Result result = Result.DEFAULT;
-    private static ListenerList listeners = new ListenerList();
+    private static ListenerList listeners = new ListenerList(null, Event.class);
     private EventPriority phase = null;
 
     public Event()
@@ -1,11 +1,18 @@
 package net.minecraftforge.fml.common.eventhandler;
 
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.WildcardType;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nonnull;
 
@@ -19,14 +26,20 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.MapMaker;
 import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class EventBus implements IEventExceptionHandler
 {
-    private static int maxID = 0;
+    private static final AtomicInteger maxID = new AtomicInteger(0);
 
     private ConcurrentHashMap<Object, ArrayList<IEventListener>> listeners = new ConcurrentHashMap<Object, ArrayList<IEventListener>>();
     private Map<Object,ModContainer> listenerOwners = new MapMaker().weakKeys().weakValues().makeMap();
-    private final int busID = maxID++;
+    private final int busID = maxID.getAndIncrement();
     private IEventExceptionHandler exceptionHandler;
 
     public EventBus()
@@ -44,7 +57,7 @@ public class EventBus implements IEventExceptionHandler
 
     public void register(Object target)
     {
-        if (listeners.containsKey(target))
+        if (listeners.putIfAbsent(target, new ArrayList<IEventListener>()) != null)
         {
             return;
         }
@@ -56,61 +69,88 @@ public class EventBus implements IEventExceptionHandler
             activeModContainer = Loader.instance().getMinecraftModContainer();
         }
         listenerOwners.put(target, activeModContainer);
+        long start = System.nanoTime();
+        // The first declaration carrying @SubscribeEvent of each signature, searched in the same order as the supertypes.
+        Map<String, Method> annotated = new HashMap<String, Method>();
         Set<? extends Class<?>> supers = TypeToken.of(target.getClass()).getTypes().rawTypes();
-        for (Method method : target.getClass().getMethods())
+        for (Class<?> cls : supers)
         {
-            for (Class<?> cls : supers)
+            for (Method real : SubscriberIndex.getSubscribers(cls))
             {
-                try
+                String key = getSignature(real);
+                if (!annotated.containsKey(key))
                 {
-                    Method real = cls.getDeclaredMethod(method.getName(), method.getParameterTypes());
-                    if (real.isAnnotationPresent(SubscribeEvent.class))
-                    {
-                        Class<?>[] parameterTypes = method.getParameterTypes();
-                        if (parameterTypes.length != 1)
-                        {
-                            throw new IllegalArgumentException(
-                                "Method " + method + " has @SubscribeEvent annotation, but requires " + parameterTypes.length +
-                                " arguments.  Event handler methods must require a single argument."
-                            );
-                        }
+                    annotated.put(key, real);
+                }
+            }
+        }
+        if (!annotated.isEmpty())
+        {
+            for (Method method : target.getClass().getMethods())
+            {
+                Method real = annotated.get(getSignature(method));
+                if (real == null)
+                {
+                    continue;
+                }
 
-                        Class<?> eventType = parameterTypes[0];
+                Class<?>[] parameterTypes = method.getParameterTypes();
+                if (parameterTypes.length != 1)
+                {
+                    throw new IllegalArgumentException(
+                        "Method " + method + " has @SubscribeEvent annotation, but requires " + parameterTypes.length +
+                        " arguments.  Event handler methods must require a single argument."
+                    );
+                }
 
-                        if (!Event.class.isAssignableFrom(eventType))
-                        {
-                            throw new IllegalArgumentException("Method " + method + " has @SubscribeEvent annotation, but takes a argument that is not an Event " + eventType);
-                        }
+                Class<?> eventType = parameterTypes[0];
 
-                        register(eventType, target, real, activeModContainer);
-                        break;
-                    }
+                if (eventType == List.class)
+                {
+                    registerBatch(getBatchType(method), target, real, activeModContainer);
+                    continue;
                 }
-                catch (NoSuchMethodException e)
+
+                if (!Event.class.isAssignableFrom(eventType))
                 {
-                    ;
+                    throw new IllegalArgumentException("Method " + method + " has @SubscribeEvent annotation, but takes a argument that is not an Event " + eventType);
                 }
+
+                register(eventType, target, real, activeModContainer);
             }
         }
+        SubscriberIndex.recordRegistration(System.nanoTime() - start);
+    }
+
+    private static String getSignature(Method method)
+    {
+        StringBuilder ret = new StringBuilder(method.getName()).append('(');
+        for (Class<?> param : method.getParameterTypes())
+        {
+            ret.append(org.objectweb.asm.Type.getDescriptor(param));
+        }
+        return ret.append(')').toString();
     }
 
     private void register(Class<?> eventType, Object target, Method method, ModContainer owner)
     {
         try
         {
-            Constructor<?> ctr = eventType.getConstructor();
-            ctr.setAccessible(true);
-            Event event = (Event)ctr.newInstance();
             ASMEventHandler listener = new ASMEventHandler(target, method, owner);
-            event.getListenerList().register(busID, listener.getPriority(), listener);
+            register(eventType, target, listener.getPriority(), listener);
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+    }
 
-            ArrayList<IEventListener> others = listeners.get(target);
-            if (others == null)
-            {
-                others = new ArrayList<IEventListener>();
-                listeners.put(target, others);
-            }
-            others.add(listener);
+    private void registerBatch(Class<?> eventType, Object target, Method method, ModContainer owner)
+    {
+        try
+        {
+            BatchEventHandler listener = new BatchEventHandler(target, method, owner);
+            register(eventType, target, listener.getPriority(), listener);
         }
         catch (Exception e)
         {
@@ -118,6 +158,34 @@ public class EventBus implements IEventExceptionHandler
         }
     }
 
+    private void register(Class<?> eventType, Object target, EventPriority priority, IEventListener listener) throws Exception
+    {
+        ListenerList.forEvent(eventType).register(busID, priority, listener);
+
+        listeners.get(target).add(listener);
+    }
+
+    /**
+     * Returns the event type of a batch listener, declared as List&lt;EventType&gt; or List&lt;? extends EventType&gt;
+     */
+    private static Class<?> getBatchType(Method method)
+    {
+        java.lang.reflect.Type type = method.getGenericParameterTypes()[0];
+        if (type instanceof ParameterizedType)
+        {
+            java.lang.reflect.Type arg = ((ParameterizedType)type).getActualTypeArguments()[0];
+            if (arg instanceof WildcardType)
+            {
+                arg = ((WildcardType)arg).getUpperBounds()[0];
+            }
+            if (arg instanceof Class && Event.class.isAssignableFrom((Class<?>)arg))
+            {
+                return (Class<?>)arg;
+            }
+        }
+        throw new IllegalArgumentException("Method " + method + " has @SubscribeEvent annotation, but takes a List that is not of a specific Event type " + type);
+    }
+
     public void unregister(Object object)
     {
         ArrayList<IEventListener> list = listeners.remove(object);
@@ -127,8 +195,23 @@ public class EventBus implements IEventExceptionHandler
         }
     }
 
+    /**
+     * Checks if anything on this bus would receive an event of the specified type,
+     * so callers can skip creating events nobody listens to.
+     */
+    public boolean hasListeners(Class<? extends Event> eventType)
+    {
+        ListenerList list = ListenerList.find(eventType);
+        return list != null && list.hasListeners(busID);
+    }
+
     public boolean post(Event event)
     {
+        if (ASMEventDispatcher.ENABLED)
+        {
+            return postCompiled(event);
+        }
+
         IEventListener[] listeners = event.getListenerList().getListeners(busID);
         int index = 0;
         try
@@ -146,6 +229,184 @@ public class EventBus implements IEventExceptionHandler
         return (event.isCancelable() ? event.isCanceled() : false);
     }
 
+    private boolean postCompiled(Event event)
+    {
+        try
+        {
+            event.getListenerList().getDispatcher(busID).invoke(event);
+        }
+        catch (ASMEventDispatcher.DispatchException e)
+        {
+            exceptionHandler.handleException(this, event, e.getListeners(), e.getIndex(), e.getCause());
+            Throwables.propagate(e.getCause());
+        }
+        return (event.isCancelable() ? event.isCanceled() : false);
+    }
+
+    /**
+     * Posts several events, fetching the listeners once per event class.
+     *
+     * Events are grouped by class, keeping their order within a class. Each listener of a class is
+     * called for all of its events before the next listener, and listeners subscribed with a List
+     * parameter receive all events they accept in one call. Listeners therefore see the same events
+     * in the same priority order as with {@link #post(Event)}, but are not interleaved by event.
+     */
+    public void postBatch(List<? extends Event> events)
+    {
+        Map<Class<?>, List<Event>> byType = new LinkedHashMap<Class<?>, List<Event>>();
+        for (Event event : events)
+        {
+            List<Event> list = byType.get(event.getClass());
+            if (list == null)
+            {
+                list = new ArrayList<Event>();
+                byType.put(event.getClass(), list);
+            }
+            list.add(event);
+        }
+
+        for (List<Event> batch : byType.values())
+        {
+            IEventListener[] listeners = batch.get(0).getListenerList().getListeners(busID);
+            int index = 0;
+            Event current = batch.get(0);
+            try
+            {
+                for (; index < listeners.length; index++)
+                {
+                    IEventListener listener = listeners[index];
+                    if (EventProfiler.unwrap(listener) instanceof BatchEventHandler)
+                    {
+                        current = batch.get(0);
+                        EventProfiler.invokeBatch(listener, batch);
+                    }
+                    else
+                    {
+                        for (Event event : batch)
+                        {
+                            current = event;
+                            listener.invoke(event);
+                        }
+                    }
+                }
+            }
+            catch (Throwable throwable)
+            {
+                exceptionHandler.handleException(this, current, listeners, index, throwable);
+                Throwables.propagate(throwable);
+            }
+        }
+    }
+
+    /**
+     * Posts an {@link AsyncSafe} event on a worker pool, returning immediately.
+     *
+     * Priorities are still barriers: every listener of one priority completes before the next
+     * priority starts. Within a priority, listeners subscribed with {@link SubscribeEvent#async()}
+     * each run as their own task, concurrently with one task running the remaining listeners in order.
+     * Cancellation is checked before each listener runs, so canceling only reliably skips listeners
+     * of later priorities.
+     *
+     * The returned future completes with the same value {@link #post(Event)} would return, or fails
+     * with the first exception thrown by a listener, after it was passed to the exception handler.
+     *
+     * Pool size defaults to the processor count, and can be set with -Dfml.asyncEventThreads
+     */
+    public ListenableFuture<Boolean> postAsync(Event event)
+    {
+        Preconditions.checkArgument(event.getClass().isAnnotationPresent(AsyncSafe.class), "Event %s is not marked @AsyncSafe", event.getClass().getName());
+        return postPhase(event, event.getListenerList().getListeners(busID), 0);
+    }
+
+    private ListenableFuture<Boolean> postPhase(final Event event, final IEventListener[] listeners, int start)
+    {
+        if (start >= listeners.length)
+        {
+            return Futures.immediateFuture(event.isCancelable() ? event.isCanceled() : false);
+        }
+
+        // Every priority starts with its marker, see ListenerList
+        listeners[start].invoke(event);
+        final int end = nextPhase(listeners, start + 1);
+
+        List<ListenableFuture<?>> tasks = new ArrayList<ListenableFuture<?>>();
+        final List<Integer> serial = new ArrayList<Integer>();
+        for (int index = start + 1; index < end; index++)
+        {
+            IEventListener listener = EventProfiler.unwrap(listeners[index]);
+            if (listener instanceof ASMEventHandler && ((ASMEventHandler)listener).isAsync())
+            {
+                final int async = index;
+                tasks.add(AsyncPool.EXECUTOR.submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        invokeAsync(event, listeners, async);
+                        return null;
+                    }
+                }));
+            }
+            else
+            {
+                serial.add(index);
+            }
+        }
+        if (!serial.isEmpty())
+        {
+            tasks.add(AsyncPool.EXECUTOR.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                {
+                    for (int index : serial)
+                    {
+                        invokeAsync(event, listeners, index);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        return Futures.transform(Futures.allAsList(tasks), new AsyncFunction<List<Object>, Boolean>()
+        {
+            @Override
+            public ListenableFuture<Boolean> apply(List<Object> input)
+            {
+                return postPhase(event, listeners, end);
+            }
+        });
+    }
+
+    private static int nextPhase(IEventListener[] listeners, int index)
+    {
+        while (index < listeners.length && !(listeners[index] instanceof EventPriority))
+        {
+            index++;
+        }
+        return index;
+    }
+
+    private void invokeAsync(Event event, IEventListener[] listeners, int index)
+    {
+        try
+        {
+            listeners[index].invoke(event);
+        }
+        catch (Throwable throwable)
+        {
+            exceptionHandler.handleException(this, event, listeners, index, throwable);
+            Throwables.propagate(throwable);
+        }
+    }
+
+    private static class AsyncPool
+    {
+        private static final ListeningExecutorService EXECUTOR = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(
+                Integer.parseInt(System.getProperty("fml.asyncEventThreads", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                new ThreadFactoryBuilder().setNameFormat("FML Event Worker #%d").setDaemon(true).build()));
+    }
+
     @Override
     public void handleException(EventBus bus, Event event, IEventListener[] listeners, int index, Throwable throwable)
     {
@@ -0,0 +1,443 @@
+package net.minecraftforge.fml.common.eventhandler;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.minecraftforge.fml.common.FMLLog;
+import net.minecraftforge.fml.common.ModContainer;
+
+import org.apache.logging.log4j.Level;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Times every event listener while enabled, attributing the cost to the listener's mod
+ * and the event class it received.
+ *
+ * Profiling works by wrapping listeners when the listener arrays are built, so turning it
+ * on or off rebuilds them and a disabled profiler adds nothing to the posting path.
+ *
+ * Can be enabled at startup with -Dfml.profileEvents=true, in which case
+ * -Dfml.profileEvents.file and -Dfml.profileEvents.interval (seconds) schedule regular dumps.
+ */
+public class EventProfiler
+{
+    private static volatile boolean enabled = false;
+    private static final ConcurrentMap<Key, Stats> stats = new ConcurrentHashMap<Key, Stats>();
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final boolean allocations = initAllocations();
+    private static ScheduledExecutorService scheduler;
+    private static ScheduledFuture<?> scheduled;
+
+    static
+    {
+        if (Boolean.parseBoolean(System.getProperty("fml.profileEvents", "false")))
+        {
+            setEnabled(true);
+            String file = System.getProperty("fml.profileEvents.file");
+            if (file != null)
+            {
+                scheduleDumps(new File(file), Long.parseLong(System.getProperty("fml.profileEvents.interval", "60")), TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private EventProfiler(){}
+
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Turns profiling on or off, rebuilding every listener array.
+     * Collected statistics are kept until {@link #reset()}.
+     */
+    public static void setEnabled(boolean value)
+    {
+        if (enabled == value)
+        {
+            return;
+        }
+        enabled = value;
+        ListenerList.invalidateAll();
+        FMLLog.info("Event profiling %s", value ? "enabled" : "disabled");
+    }
+
+    public static void reset()
+    {
+        stats.clear();
+        if (enabled)
+        {
+            // The wrappers hold on to the statistics they last recorded into
+            ListenerList.invalidateAll();
+        }
+    }
+
+    static IEventListener wrap(IEventListener listener)
+    {
+        if (listener instanceof EventPriority)
+        {
+            return listener;
+        }
+        return new ProfiledListener(listener);
+    }
+
+    /**
+     * Returns the listener a profiling wrapper was created for, or the argument if it is not one.
+     */
+    static IEventListener unwrap(IEventListener listener)
+    {
+        return listener instanceof ProfiledListener ? ((ProfiledListener)listener).listener : listener;
+    }
+
+    /**
+     * Hands a batch to a {@link BatchEventHandler}, timing the call as one invocation if it is wrapped.
+     */
+    static void invokeBatch(IEventListener listener, List<? extends Event> events)
+    {
+        if (listener instanceof ProfiledListener)
+        {
+            ((ProfiledListener)listener).invokeBatch(events);
+        }
+        else
+        {
+            ((BatchEventHandler)listener).invokeBatch(events);
+        }
+    }
+
+    /**
+     * Writes the collected statistics, sorted by total time. Files ending in .json are
+     * written as JSON, anything else as CSV.
+     */
+    public static synchronized void dump(File file) throws IOException
+    {
+        List<Entry> entries = snapshot();
+        StringBuilder out = new StringBuilder();
+        if (file.getName().endsWith(".json"))
+        {
+            out.append(new GsonBuilder().setPrettyPrinting().create().toJson(entries));
+        }
+        else
+        {
+            out.append("mod,event,listener,invocations,totalNanos,maxNanos,allocatedBytes\n");
+            for (Entry e : entries)
+            {
+                out.append(csv(e.mod)).append(',').append(csv(e.event)).append(',').append(csv(e.listener)).append(',')
+                   .append(e.invocations).append(',').append(e.totalNanos).append(',').append(e.maxNanos).append(',').append(e.allocatedBytes).append('\n');
+            }
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists())
+        {
+            parent.mkdirs();
+        }
+        Files.write(out, file, Charsets.UTF_8);
+    }
+
+    /**
+     * Dumps to the specified file every period, replacing any previous schedule.
+     * A period of 0 or less cancels scheduled dumps.
+     */
+    public static synchronized void scheduleDumps(final File file, long period, TimeUnit unit)
+    {
+        if (scheduled != null)
+        {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        if (period <= 0)
+        {
+            return;
+        }
+        if (scheduler == null)
+        {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("FML Event Profiler").setDaemon(true).build());
+        }
+        scheduled = scheduler.scheduleAtFixedRate(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    dump(file);
+                }
+                catch (IOException e)
+                {
+                    FMLLog.log(Level.ERROR, e, "Failed to write event profile to %s", file);
+                }
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Returns the collected statistics, sorted by total time spent. Besides one entry per
+     * listener and event class, each mod and event class gets a total with a listener of "*".
+     */
+    public static List<Entry> snapshot()
+    {
+        List<Entry> ret = new ArrayList<Entry>();
+        Map<Key, Stats> totals = new HashMap<Key, Stats>();
+        for (Map.Entry<Key, Stats> e : stats.entrySet())
+        {
+            Key key = e.getKey();
+            Stats value = e.getValue();
+            ret.add(new Entry(key, value));
+
+            Key total = new Key(key.mod, key.event, "*");
+            Stats sum = totals.get(total);
+            if (sum == null)
+            {
+                sum = new Stats();
+                totals.put(total, sum);
+            }
+            sum.add(value);
+        }
+        for (Map.Entry<Key, Stats> e : totals.entrySet())
+        {
+            ret.add(new Entry(e.getKey(), e.getValue()));
+        }
+        Collections.sort(ret, new Comparator<Entry>()
+        {
+            @Override
+            public int compare(Entry o1, Entry o2)
+            {
+                return o1.totalNanos == o2.totalNanos ? 0 : (o1.totalNanos > o2.totalNanos ? -1 : 1);
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * Quotes a CSV field when it holds a separator, a quote or a line break.
+     */
+    public static String csv(String value)
+    {
+        if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1 && value.indexOf('\r') == -1)
+        {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static boolean initAllocations()
+    {
+        try
+        {
+            if (threads instanceof com.sun.management.ThreadMXBean)
+            {
+                com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)threads;
+                if (bean.isThreadAllocatedMemorySupported())
+                {
+                    bean.setThreadAllocatedMemoryEnabled(true);
+                    return true;
+                }
+            }
+        }
+        catch (Throwable t)
+        {
+            // Not a HotSpot VM, only times are recorded
+        }
+        return false;
+    }
+
+    private static long allocatedBytes()
+    {
+        return allocations ? ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    private static class ProfiledListener implements IEventListener
+    {
+        private final IEventListener listener;
+        private final String mod;
+        private final String name;
+        /**
+         * Statistics of the last event class received, most listeners only receive one.
+         */
+        private volatile Last last;
+
+        private ProfiledListener(IEventListener listener)
+        {
+            this.listener = listener;
+            ModContainer owner = listener instanceof ASMEventHandler ? ((ASMEventHandler)listener).getOwner() : null;
+            this.mod = owner == null ? "unknown" : owner.getModId();
+            this.name = listener.toString();
+        }
+
+        @Override
+        public void invoke(Event event)
+        {
+            Stats target = statsFor(event.getClass());
+            long alloc = allocatedBytes();
+            long start = System.nanoTime();
+            try
+            {
+                listener.invoke(event);
+            }
+            finally
+            {
+                target.record(System.nanoTime() - start, allocatedBytes() - alloc);
+            }
+        }
+
+        private void invokeBatch(List<? extends Event> events)
+        {
+            Stats target = statsFor(events.get(0).getClass());
+            long alloc = allocatedBytes();
+            long start = System.nanoTime();
+            try
+            {
+                ((BatchEventHandler)listener).invokeBatch(events);
+            }
+            finally
+            {
+                target.record(System.nanoTime() - start, allocatedBytes() - alloc);
+            }
+        }
+
+        private Stats statsFor(Class<?> event)
+        {
+            Last cached = last;
+            if (cached != null && cached.event == event)
+            {
+                return cached.stats;
+            }
+            Key key = new Key(mod, event.getName(), name);
+            Stats ret = stats.get(key);
+            if (ret == null)
+            {
+                Stats created = new Stats();
+                ret = stats.putIfAbsent(key, created);
+                if (ret == null) ret = created;
+            }
+            last = new Last(event, ret);
+            return ret;
+        }
+
+        @Override
+        public String toString()
+        {
+            return listener.toString();
+        }
+    }
+
+    private static class Last
+    {
+        private final Class<?> event;
+        private final Stats stats;
+
+        private Last(Class<?> event, Stats stats)
+        {
+            this.event = event;
+            this.stats = stats;
+        }
+    }
+
+    private static class Key
+    {
+        private final String mod;
+        private final String event;
+        private final String listener;
+
+        private Key(String mod, String event, String listener)
+        {
+            this.mod = mod;
+            this.event = event;
+            this.listener = listener;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (mod.hashCode() * 31 + event.hashCode()) * 31 + listener.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key))
+            {
+                return false;
+            }
+            Key o = (Key)obj;
+            return mod.equals(o.mod) && event.equals(o.event) && listener.equals(o.listener);
+        }
+    }
+
+    private static class Stats
+    {
+        private final AtomicLong invocations = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+
+        private void record(long nanos, long allocated)
+        {
+            invocations.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            allocatedBytes.addAndGet(allocated);
+            updateMax(nanos);
+        }
+
+        private void add(Stats other)
+        {
+            invocations.addAndGet(other.invocations.get());
+            totalNanos.addAndGet(other.totalNanos.get());
+            allocatedBytes.addAndGet(other.allocatedBytes.get());
+            updateMax(other.maxNanos.get());
+        }
+
+        private void updateMax(long nanos)
+        {
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos))
+            {
+                max = maxNanos.get();
+            }
+        }
+    }
+
+    /**
+     * One row of the report: a listener of a mod, and the event class it received.
+     */
+    public static class Entry
+    {
+        public final String mod;
+        public final String event;
+        public final String listener;
+        public final long invocations;
+        public final long totalNanos;
+        public final long maxNanos;
+        public final long allocatedBytes;
+
+        private Entry(Key key, Stats stats)
+        {
+            this.mod = key.mod;
+            this.event = key.event;
+            this.listener = key.listener;
+            this.invocations = stats.invocations.get();
+            this.totalNanos = stats.totalNanos.get();
+            this.maxNanos = stats.maxNanos.get();
+            this.allocatedBytes = stats.allocatedBytes.get();
+        }
+    }
+}
@@ -1,16 +1,31 @@
 package net.minecraftforge.fml.common.eventhandler;
 
+import java.lang.reflect.Constructor;
 import java.util.*;
-import com.google.common.collect.ImmutableList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 
+/**
+ * Holds the listeners of one event type for every bus.
+ *
+ * Posting never locks: the listener array for a bus is an immutable snapshot published
+ * through a single volatile field. Registration, unregistration and resizing are serialized
+ * on a global lock, copy the affected priority array, and drop the cached snapshots of the
+ * changed list and all of its children so they are rebuilt on their next use.
+ */
 public class ListenerList
 {
-    private static ImmutableList<ListenerList> allLists = ImmutableList.of();
+    private static final Object LOCK = new Object();
+    private static volatile ImmutableList<ListenerList> allLists = ImmutableList.of();
     private static int maxSize = 0;
+    private static final ConcurrentMap<Class<?>, ListenerList> byEvent = new ConcurrentHashMap<Class<?>, ListenerList>();
+    private static final ConcurrentMap<Class<?>, ListenerList> resolved = new ConcurrentHashMap<Class<?>, ListenerList>();
 
-    private ListenerList parent;
-    private ListenerListInst[] lists = new ListenerListInst[0];
+    private final ListenerList parent;
+    private volatile ListenerListInst[] lists = new ListenerListInst[0];
 
     public ListenerList()
     {
@@ -19,70 +34,204 @@ public class ListenerList
 
     public ListenerList(ListenerList parent)
     {
-        // parent needs to be set before resize !
-        this.parent = parent;
-        extendMasterList(this);
-        resizeLists(maxSize);
+        synchronized (LOCK)
+        {
+            // parent needs to be set before resize !
+            this.parent = parent;
+            extendMasterList(this);
+            resizeLists(maxSize);
+        }
     }
 
-    private synchronized static void extendMasterList(ListenerList inst)
+    /**
+     * Creates the list for the specified event type, and makes it available to {@link #find(Class)}
+     * and {@link #forEvent(Class)}. Called from {@link #forSubclass} and the setup() method the
+     * EventSubscriptionTransformer adds to event classes.
+     */
+    public ListenerList(ListenerList parent, Class<?> eventType)
     {
-        ImmutableList.Builder<ListenerList> builder = ImmutableList.builder();
-        builder.addAll(allLists);
-        builder.add(inst);
-        allLists = builder.build();
+        this(parent);
+        bind(eventType, this);
     }
 
-    public static void resize(int max)
+    /**
+     * Associates a list with an event class, first one wins.
+     */
+    static void bind(Class<?> eventType, ListenerList list)
     {
-        if (max <= maxSize)
+        if (byEvent.get(eventType) != null)
         {
             return;
         }
-        for (ListenerList list : allLists)
+        synchronized (resolved)
         {
-            list.resizeLists(max);
+            if (byEvent.putIfAbsent(eventType, list) == null)
+            {
+                // Classes may have resolved to an ancestor of this one
+                resolved.clear();
+            }
         }
-        maxSize = max;
     }
 
-    public void resizeLists(int max)
+    /**
+     * Finds the list that an instance of the specified event class would post to,
+     * without creating an instance. Event types that have not created their own list yet
+     * resolve to the closest ancestor that has, which holds exactly the listeners they
+     * would receive.
+     *
+     * @return The list, or null if no list exists for this class or any of its parents.
+     */
+    public static ListenerList find(Class<?> eventType)
     {
-        if (parent != null)
+        ListenerList ret = resolved.get(eventType);
+        if (ret != null)
+        {
+            return ret;
+        }
+        synchronized (resolved)
         {
-            parent.resizeLists(max);
+            for (Class<?> cls = eventType; cls != null; cls = cls.getSuperclass())
+            {
+                ret = byEvent.get(cls);
+                if (ret != null)
+                {
+                    resolved.put(eventType, ret);
+                    return ret;
+                }
+            }
         }
+        return null;
+    }
 
-        if (lists.length >= max)
+    /**
+     * Creates the list of an event class from the static initializer the EventSubscriptionTransformer
+     * adds to it, as a child of the list of its parent class.
+     *
+     * A parent that defines its own setup() and getListenerList() may only create its list with an
+     * instance. If it has not, this returns null, and the setup() method added next to the static
+     * initializer creates the list from the parent instance when the event is first constructed.
+     */
+    public static ListenerList forSubclass(Class<?> parentType, Class<?> eventType)
+    {
+        // The parent is initialized before its subclasses, so a list it binds is already there
+        ListenerList parent = byEvent.get(parentType);
+        return parent == null ? null : new ListenerList(parent, eventType);
+    }
+
+    /**
+     * Returns the list belonging to exactly the specified event class, without creating an event.
+     *
+     * Event classes processed by the EventSubscriptionTransformer create their list when the class
+     * is initialized. Others, which define their own setup() and getListenerList(), are instantiated
+     * once to reach it.
+     */
+    public static ListenerList forEvent(Class<?> eventType)
+    {
+        ListenerList ret = byEvent.get(eventType);
+        if (ret != null)
         {
-            return;
+            return ret;
+        }
+        try
+        {
+            // Runs the static initializer, which binds the list
+            Class.forName(eventType.getName(), true, eventType.getClassLoader());
+            ret = byEvent.get(eventType);
+            if (ret == null)
+            {
+                Constructor<?> ctr = eventType.getConstructor();
+                ctr.setAccessible(true);
+                ret = ((Event)ctr.newInstance()).getListenerList();
+                bind(eventType, ret);
+                ret = byEvent.get(eventType);
+            }
+            return ret;
+        }
+        catch (Exception e)
+        {
+            throw Throwables.propagate(e);
         }
+    }
 
-        ListenerListInst[] newList = new ListenerListInst[max];
-        int x = 0;
-        for (; x < lists.length; x++)
+    private static void extendMasterList(ListenerList inst)
+    {
+        ImmutableList.Builder<ListenerList> builder = ImmutableList.builder();
+        builder.addAll(allLists);
+        builder.add(inst);
+        allLists = builder.build();
+    }
+
+    public static void resize(int max)
+    {
+        synchronized (LOCK)
         {
-            newList[x] = lists[x];
+            if (max <= maxSize)
+            {
+                return;
+            }
+            for (ListenerList list : allLists)
+            {
+                list.resizeLists(max);
+            }
+            maxSize = max;
         }
-        for(; x < max; x++)
+    }
+
+    public void resizeLists(int max)
+    {
+        synchronized (LOCK)
         {
             if (parent != null)
             {
-                newList[x] = new ListenerListInst(parent.getInstance(x));
+                parent.resizeLists(max);
             }
-            else
+
+            if (lists.length >= max)
             {
-                newList[x] = new ListenerListInst();
+                return;
+            }
+
+            ListenerListInst[] newList = Arrays.copyOf(lists, max);
+            for (int x = lists.length; x < max; x++)
+            {
+                if (parent != null)
+                {
+                    newList[x] = new ListenerListInst(parent.getInstance(x));
+                }
+                else
+                {
+                    newList[x] = new ListenerListInst();
+                }
             }
+            lists = newList;
         }
-        lists = newList;
     }
 
     public static void clearBusID(int id)
     {
-        for (ListenerList list : allLists)
+        synchronized (LOCK)
         {
-            list.lists[id].dispose();
+            for (ListenerList list : allLists)
+            {
+                list.lists[id].dispose();
+            }
+        }
+    }
+
+    /**
+     * Drops every cached listener array, so they are rebuilt on next use.
+     */
+    static void invalidateAll()
+    {
+        synchronized (LOCK)
+        {
+            for (ListenerList list : allLists)
+            {
+                for (ListenerListInst inst : list.lists)
+                {
+                    inst.invalidate();
+                }
+            }
         }
     }
 
@@ -96,6 +245,23 @@ public class ListenerList
         return lists[id].getListeners();
     }
 
+    /**
+     * Whether anything is listening on the specified bus, including listeners of parent events.
+     */
+    public boolean hasListeners(int id)
+    {
+        return lists[id].getListeners().length > 0;
+    }
+
+    /**
+     * Returns a generated listener that calls every listener in {@link #getListeners(int)}
+     * in order, see {@link ASMEventDispatcher}.
+     */
+    public IEventListener getDispatcher(int id)
+    {
+        return lists[id].getDispatcher();
+    }
+
     public void register(int id, EventPriority priority, IEventListener listener)
     {
         lists[id].register(priority, listener);
@@ -108,45 +274,68 @@ public class ListenerList
 
     public static void unregisterAll(int id, IEventListener listener)
     {
-        for (ListenerList list : allLists)
+        synchronized (LOCK)
         {
-            list.unregister(id, listener);
+            for (ListenerList list : allLists)
+            {
+                list.unregister(id, listener);
+            }
         }
     }
 
-    private class ListenerListInst
+    /**
+     * Immutable view of the listeners of one list, published as a whole.
+     */
+    private static class Snapshot
     {
-        private boolean rebuild = true;
-        private IEventListener[] listeners;
-        private ArrayList<ArrayList<IEventListener>> priorities;
+        private final IEventListener[] listeners;
+        private volatile IEventListener dispatcher;
+
+        private Snapshot(IEventListener[] listeners)
+        {
+            this.listeners = listeners;
+        }
+    }
+
+    private static class ListenerListInst
+    {
+        private static final IEventListener[] EMPTY = new IEventListener[0];
+
+        private volatile Snapshot snapshot;
+        private IEventListener[][] priorities;
+        private ImmutableList<ListenerListInst> children = ImmutableList.of();
         private ListenerListInst parent;
 
         private ListenerListInst()
         {
-            int count = EventPriority.values().length;
-            priorities = new ArrayList<ArrayList<IEventListener>>(count);
+            priorities = new IEventListener[EventPriority.values().length][];
+            Arrays.fill(priorities, EMPTY);
+        }
 
-            for (int x = 0; x < count; x++)
-            {
-                priorities.add(new ArrayList<IEventListener>());
-            }
+        private ListenerListInst(ListenerListInst parent)
+        {
+            this();
+            this.parent = parent;
+            parent.children = ImmutableList.<ListenerListInst>builder().addAll(parent.children).add(this).build();
         }
 
         public void dispose()
         {
-            for (ArrayList<IEventListener> listeners : priorities)
+            Arrays.fill(priorities, EMPTY);
+            invalidate();
+            if (parent != null)
             {
-                listeners.clear();
+                ImmutableList.Builder<ListenerListInst> builder = ImmutableList.builder();
+                for (ListenerListInst child : parent.children)
+                {
+                    if (child != this)
+                    {
+                        builder.add(child);
+                    }
+                }
+                parent.children = builder.build();
             }
-            priorities.clear();
             parent = null;
-            listeners = null;
-        }
-
-        private ListenerListInst(ListenerListInst parent)
-        {
-            this();
-            this.parent = parent;
         }
 
         /**
@@ -155,12 +344,14 @@ public class ListenerList
          *
          * The list is returned with the listeners for the children events first.
          *
+         * Must be called while holding the registration lock.
+         *
          * @param priority The Priority to get
          * @return ArrayList containing listeners
          */
-        public ArrayList<IEventListener> getListeners(EventPriority priority)
+        private ArrayList<IEventListener> getListeners(EventPriority priority)
         {
-            ArrayList<IEventListener> ret = new ArrayList<IEventListener>(priorities.get(priority.ordinal()));
+            ArrayList<IEventListener> ret = new ArrayList<IEventListener>(Arrays.asList(priorities[priority.ordinal()]));
             if (parent != null)
             {
                 ret.addAll(parent.getListeners(priority));
@@ -180,52 +371,106 @@ public class ListenerList
          */
         public IEventListener[] getListeners()
         {
-            if (shouldRebuild()) buildCache();
-            return listeners;
+            Snapshot current = snapshot;
+            if (current == null) current = buildCache();
+            return current.listeners;
         }
 
-        protected boolean shouldRebuild()
+        /**
+         * Returns the compiled form of {@link #getListeners()}, generating it
+         * again if the listeners have changed since it was last built.
+         *
+         * @return Dispatcher calling all listeners
+         */
+        public IEventListener getDispatcher()
         {
-            return rebuild || (parent != null && parent.shouldRebuild());
+            Snapshot current = snapshot;
+            if (current == null) current = buildCache();
+            IEventListener dispatcher = current.dispatcher;
+            if (dispatcher == null)
+            {
+                // Racing threads may both generate one, either is correct for this snapshot.
+                dispatcher = ASMEventDispatcher.create(current.listeners);
+                current.dispatcher = dispatcher;
+            }
+            return dispatcher;
         }
 
         /**
-         * Rebuild the local Array of listeners, returns early if there is no work to do.
+         * Drops the cached listeners of this list and every list inheriting from it.
+         * Must be called while holding the registration lock.
          */
-        private void buildCache()
+        private void invalidate()
         {
-            if(parent != null && parent.shouldRebuild())
+            snapshot = null;
+            for (ListenerListInst child : children)
             {
-                parent.buildCache();
+                child.invalidate();
             }
+        }
 
-            ArrayList<IEventListener> ret = new ArrayList<IEventListener>();
-            for (EventPriority value : EventPriority.values())
+        /**
+         * Rebuild the local Array of listeners, returns early if another thread already did.
+         */
+        private Snapshot buildCache()
+        {
+            synchronized (LOCK)
             {
-                List<IEventListener> listeners = getListeners(value);
-                if (listeners.size() > 0)
+                Snapshot current = snapshot;
+                if (current != null)
                 {
-                    ret.add(value); //Add the priority to notify the event of it's current phase.
-                    ret.addAll(listeners);
+                    return current;
                 }
+
+                boolean profile = EventProfiler.isEnabled();
+                ArrayList<IEventListener> ret = new ArrayList<IEventListener>();
+                for (EventPriority value : EventPriority.values())
+                {
+                    List<IEventListener> listeners = getListeners(value);
+                    if (listeners.size() > 0)
+                    {
+                        ret.add(value); //Add the priority to notify the event of it's current phase.
+                        for (IEventListener listener : listeners)
+                        {
+                            ret.add(profile ? EventProfiler.wrap(listener) : listener);
+                        }
+                    }
+                }
+                current = new Snapshot(ret.toArray(new IEventListener[ret.size()]));
+                snapshot = current;
+                return current;
             }
-            listeners = ret.toArray(new IEventListener[ret.size()]);
-            rebuild = false;
         }
 
         public void register(EventPriority priority, IEventListener listener)
         {
-            priorities.get(priority.ordinal()).add(listener);
-            rebuild = true;
+            synchronized (LOCK)
+            {
+                IEventListener[] old = priorities[priority.ordinal()];
+                IEventListener[] list = Arrays.copyOf(old, old.length + 1);
+                list[old.length] = listener;
+                priorities[priority.ordinal()] = list;
+                invalidate();
+            }
         }
 
         public void unregister(IEventListener listener)
         {
-            for(ArrayList<IEventListener> list : priorities)
+            synchronized (LOCK)
             {
-                if (list.remove(listener))
+                boolean changed = false;
+                for (int x = 0; x < priorities.length; x++)
+                {
+                    List<IEventListener> list = new ArrayList<IEventListener>(Arrays.asList(priorities[x]));
+                    if (list.remove(listener))
+                    {
+                        priorities[x] = list.toArray(new IEventListener[list.size()]);
+                        changed = true;
+                    }
+                }
+                if (changed)
                 {
-                    rebuild = true;
+                    invalidate();
                 }
             }
         }
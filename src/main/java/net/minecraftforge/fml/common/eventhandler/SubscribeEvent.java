@@ -12,4 +12,9 @@ public @interface SubscribeEvent
 {
     public EventPriority priority() default EventPriority.NORMAL;
     public boolean receiveCanceled() default false;
+    /**
+     * When the event is posted with {@link EventBus#postAsync(Event)}, allows this listener to run
+     * concurrently with the other listeners of the same priority.
+     */
+    public boolean async() default false;
 }
@@ -0,0 +1,122 @@
+package net.minecraftforge.fml.common.eventhandler;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.minecraftforge.fml.common.FMLLog;
+import net.minecraftforge.fml.common.discovery.ASMDataTable;
+import net.minecraftforge.fml.common.discovery.ASMDataTable.ASMData;
+import net.minecraftforge.fml.common.discovery.ModCandidate;
+
+import org.objectweb.asm.Type;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
+
+/**
+ * Finds the @SubscribeEvent methods declared by a class for {@link EventBus#register(Object)}.
+ *
+ * Once mod discovery has run, classes it scanned are answered from the @SubscribeEvent
+ * locations recorded in the {@link ASMDataTable}, so the many classes without subscribers
+ * are never reflected on. Other classes fall back to reflection. Results are cached per class.
+ */
+public class SubscriberIndex
+{
+    private static volatile SubscriberIndex instance;
+    private static final ConcurrentMap<Class<?>, List<Method>> cache = new ConcurrentHashMap<Class<?>, List<Method>>();
+    private static final AtomicInteger indexed = new AtomicInteger();
+    private static final AtomicInteger reflected = new AtomicInteger();
+    private static final AtomicLong registerNanos = new AtomicLong();
+
+    private final Set<String> scanned;
+    private final SetMultimap<String, String> subscribers;
+
+    private SubscriberIndex(Set<String> scanned, SetMultimap<String, String> subscribers)
+    {
+        this.scanned = scanned;
+        this.subscribers = subscribers;
+    }
+
+    /**
+     * Builds the index from the results of mod discovery.
+     */
+    public static void install(ASMDataTable table, List<ModCandidate> candidates)
+    {
+        ImmutableSet.Builder<String> scanned = ImmutableSet.builder();
+        for (ModCandidate candidate : candidates)
+        {
+            for (String cls : candidate.getClassList())
+            {
+                scanned.add(cls.replace('/', '.'));
+            }
+        }
+        SetMultimap<String, String> subscribers = HashMultimap.create();
+        for (ASMData data : table.getAll(SubscribeEvent.class.getName()))
+        {
+            subscribers.put(data.getClassName(), data.getObjectName());
+        }
+        instance = new SubscriberIndex(scanned.build(), subscribers);
+        cache.clear();
+        FMLLog.fine("Event subscriber index built with %d subscriber methods", subscribers.size());
+    }
+
+    /**
+     * Returns the methods declared by the class that are annotated with @SubscribeEvent.
+     */
+    static List<Method> getSubscribers(Class<?> cls)
+    {
+        List<Method> ret = cache.get(cls);
+        if (ret != null)
+        {
+            return ret;
+        }
+
+        SubscriberIndex index = instance;
+        if (index != null && index.scanned.contains(cls.getName()))
+        {
+            indexed.incrementAndGet();
+            Set<String> names = index.subscribers.get(cls.getName());
+            ret = names.isEmpty() ? Collections.<Method>emptyList() : findDeclared(cls, names);
+        }
+        else
+        {
+            reflected.incrementAndGet();
+            ret = findDeclared(cls, null);
+        }
+        cache.putIfAbsent(cls, ret);
+        return ret;
+    }
+
+    private static List<Method> findDeclared(Class<?> cls, Set<String> names)
+    {
+        ImmutableList.Builder<Method> ret = ImmutableList.builder();
+        for (Method method : cls.getDeclaredMethods())
+        {
+            if ((names == null || names.contains(method.getName() + Type.getMethodDescriptor(method))) && method.isAnnotationPresent(SubscribeEvent.class))
+            {
+                ret.add(method);
+            }
+        }
+        return ret.build();
+    }
+
+    static void recordRegistration(long nanos)
+    {
+        registerNanos.addAndGet(nanos);
+    }
+
+    public static void logStatistics()
+    {
+        FMLLog.info("Event subscriber registration took %d ms, %d classes resolved from the discovery index, %d by reflection",
+                TimeUnit.NANOSECONDS.toMillis(registerNanos.get()), indexed.get(), reflected.get());
+    }
+}
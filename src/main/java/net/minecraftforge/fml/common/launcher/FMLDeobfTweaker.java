@@ -7,7 +7,8 @@ import java.util.List;
 import net.minecraft.launchwrapper.ITweaker;
 import net.minecraft.launchwrapper.Launch;
 import net.minecraft.launchwrapper.LaunchClassLoader;
-import net.minecraftforge.fml.relauncher.CoreModManager;
+import net.minecraftforge.fml.common.asm.transformers.AccessTransformerHost;
+import net.minecraftforge.fml.common.asm.transformers.TransformerHost;
 import net.minecraftforge.fml.relauncher.FMLInjectionData;
 import net.minecraftforge.fml.relauncher.FMLRelaunchLog;
 
@@ -21,17 +22,25 @@ public class FMLDeobfTweaker implements ITweaker {
     public void injectIntoClassLoader(LaunchClassLoader classLoader)
     {
         // Deobfuscation transformer, always last, and the access transformer tweaker as well
-        if (!(Boolean)Launch.blackboard.get("fml.deobfuscatedEnvironment"))
+        boolean deobf = !(Boolean)Launch.blackboard.get("fml.deobfuscatedEnvironment");
+        if (TransformerHost.ENABLED)
         {
-            classLoader.registerTransformer("net.minecraftforge.fml.common.asm.transformers.DeobfuscationTransformer");
+            // Both in one pass over the class
+            classLoader.registerTransformer(deobf ? "net.minecraftforge.fml.common.asm.transformers.DeobfuscationTransformerHost"
+                                                  : "net.minecraftforge.fml.common.asm.transformers.AccessTransformerHost");
         }
-        // Add all the access transformers now as well
-        for (String transformer : CoreModManager.getAccessTransformers())
+        else
         {
-            classLoader.registerTransformer(transformer);
+            if (deobf)
+            {
+                classLoader.registerTransformer("net.minecraftforge.fml.common.asm.transformers.DeobfuscationTransformer");
+            }
+            // Add all the access transformers now as well
+            for (String transformer : AccessTransformerHost.getTransformers())
+            {
+                classLoader.registerTransformer(transformer);
+            }
         }
-        classLoader.registerTransformer("net.minecraftforge.fml.common.asm.transformers.ModAccessTransformer");
-        classLoader.registerTransformer("net.minecraftforge.fml.common.asm.transformers.ItemStackTransformer");
         try
         {
             FMLRelaunchLog.fine("Validating minecraft");
@@ -0,0 +1,305 @@
+package net.minecraftforge.fml.common.patcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Pack200;
+import java.util.regex.Pattern;
+
+import net.minecraftforge.fml.relauncher.FMLRelaunchLog;
+import net.minecraftforge.fml.relauncher.Side;
+import LZMA.LzmaInputStream;
+
+import org.apache.logging.log4j.Level;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
+
+/**
+ * The binary patches of one side, indexed by the class they apply to.
+ *
+ * The patches ship as an LZMA compressed Pack200 archive, which has to be unpacked as a whole.
+ * That is done once: the patches of the side are written to a flat file in the cache directory,
+ * named after the hash of the archive, and later launches memory map that file. Only the index
+ * is read up front, patches are decoded when their class is loaded.
+ *
+ * File layout, all numbers big endian:
+ * <pre>
+ * int magic, int version, int count
+ * count times: int name length, UTF-8 source class name, int offset, int length
+ * patch data, each entry a .binpatch file as written by GenDiffSet, offsets relative to its start
+ * </pre>
+ */
+class BinPatchStore
+{
+    private static final int MAGIC = 0x464D4C50; // FMLP
+    private static final int VERSION = 1;
+    private static final String ARCHIVE = "/binpatches.pack.lzma";
+
+    private static HashCode archiveHash;
+
+    private final ByteBuffer data;
+    private final ListMultimap<String, int[]> index;
+
+    private BinPatchStore(ByteBuffer buf) throws IOException
+    {
+        try
+        {
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION)
+            {
+                throw new IOException("Not a binary patch store");
+            }
+            int count = buf.getInt();
+            ImmutableListMultimap.Builder<String, int[]> builder = ImmutableListMultimap.builder();
+            for (int x = 0; x < count; x++)
+            {
+                byte[] name = new byte[buf.getInt()];
+                buf.get(name);
+                builder.put(new String(name, Charsets.UTF_8), new int[] { buf.getInt(), buf.getInt() });
+            }
+            this.data = buf.slice();
+            this.index = builder.build();
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw new IOException("Truncated binary patch store", e);
+        }
+        for (int[] entry : index.values())
+        {
+            if (entry[0] < 0 || entry[1] < 0 || entry[0] + entry[1] > data.capacity())
+            {
+                throw new IOException("Corrupt binary patch store");
+            }
+        }
+    }
+
+    /**
+     * @return The SHA-1 of the binary patch archive, only computed once, or null if there are no binary patches
+     */
+    static synchronized HashCode archiveHash() throws IOException
+    {
+        if (archiveHash == null)
+        {
+            URL archive = BinPatchStore.class.getResource(ARCHIVE);
+            if (archive == null)
+            {
+                return null;
+            }
+            archiveHash = Resources.asByteSource(archive).hash(Hashing.sha1());
+        }
+        return archiveHash;
+    }
+
+    /**
+     * Opens the store for the side, converting the patch archive if it was not done before.
+     *
+     * @param cacheDir Where converted stores are kept, null to convert in memory every time
+     * @return The store, or null if there are no binary patches
+     */
+    static BinPatchStore load(Side side, File cacheDir) throws IOException
+    {
+        URL archive = BinPatchStore.class.getResource(ARCHIVE);
+        if (archive == null)
+        {
+            return null;
+        }
+        String sideName = side.toString().toLowerCase(Locale.ENGLISH);
+
+        File cache = null;
+        if (cacheDir != null)
+        {
+            String hash = archiveHash().toString();
+            cache = new File(cacheDir, String.format("binpatches-%s-%s.bin", sideName, hash));
+            if (cache.isFile())
+            {
+                try
+                {
+                    return new BinPatchStore(map(cache));
+                }
+                catch (IOException e)
+                {
+                    FMLRelaunchLog.log(Level.WARN, e, "The cached binary patches in %s are unusable, converting them again", cache);
+                }
+            }
+        }
+
+        byte[] converted = convert(archive, sideName);
+        if (cache != null)
+        {
+            try
+            {
+                write(cache, converted);
+                return new BinPatchStore(map(cache));
+            }
+            catch (IOException e)
+            {
+                FMLRelaunchLog.log(Level.WARN, e, "Unable to cache the binary patches in %s", cache);
+            }
+        }
+        return new BinPatchStore(ByteBuffer.wrap(converted));
+    }
+
+    private static ByteBuffer map(File file) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            // The mapping stays valid after the file is closed
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    private static void write(File target, byte[] converted) throws IOException
+    {
+        File dir = target.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs())
+        {
+            throw new IOException("Could not create " + dir);
+        }
+        // Stores of earlier patch archives will not be used again
+        File[] old = dir.listFiles();
+        String prefix = target.getName().substring(0, target.getName().lastIndexOf('-') + 1);
+        if (old != null)
+        {
+            for (File file : old)
+            {
+                if (file.getName().startsWith(prefix))
+                {
+                    file.delete();
+                }
+            }
+        }
+        File tmp = new File(dir, target.getName() + ".tmp");
+        Files.write(converted, tmp);
+        if (!tmp.renameTo(target))
+        {
+            tmp.delete();
+            throw new IOException("Could not rename " + tmp + " to " + target);
+        }
+    }
+
+    /**
+     * Unpacks the legacy patch archive, and lays out the patches of the side in the store format.
+     */
+    private static byte[] convert(URL archive, String side) throws IOException
+    {
+        FMLRelaunchLog.fine("Converting the binary patch archive for the %s", side);
+        Pattern binpatchMatcher = Pattern.compile(String.format("binpatch/%s/.*.binpatch", side));
+        JarInputStream jis;
+        InputStream binpatchesCompressed = archive.openStream();
+        try
+        {
+            LzmaInputStream binpatchesDecompressed = new LzmaInputStream(binpatchesCompressed);
+            ByteArrayOutputStream jarBytes = new ByteArrayOutputStream();
+            JarOutputStream jos = new JarOutputStream(jarBytes);
+            Pack200.newUnpacker().unpack(binpatchesDecompressed, jos);
+            jos.close();
+            jis = new JarInputStream(new ByteArrayInputStream(jarBytes.toByteArray()));
+        }
+        finally
+        {
+            binpatchesCompressed.close();
+        }
+
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        DataOutputStream tableOut = new DataOutputStream(table);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int count = 0;
+        JarEntry entry;
+        while ((entry = jis.getNextJarEntry()) != null)
+        {
+            if (!binpatchMatcher.matcher(entry.getName()).matches())
+            {
+                continue;
+            }
+            byte[] patch = ByteStreams.toByteArray(jis);
+            ByteArrayDataInput input = ByteStreams.newDataInput(patch);
+            input.readUTF(); // name
+            byte[] source = input.readUTF().getBytes(Charsets.UTF_8);
+            tableOut.writeInt(source.length);
+            tableOut.write(source);
+            tableOut.writeInt(data.size());
+            tableOut.writeInt(patch.length);
+            data.write(patch);
+            count++;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(12 + table.size() + data.size());
+        DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(MAGIC);
+        dataOut.writeInt(VERSION);
+        dataOut.writeInt(count);
+        table.writeTo(dataOut);
+        data.writeTo(dataOut);
+        dataOut.flush();
+        return out.toByteArray();
+    }
+
+    int size()
+    {
+        return index.size();
+    }
+
+    /**
+     * The names of the classes that have patches, before they are patched.
+     */
+    Set<String> getClassNames()
+    {
+        return index.keySet();
+    }
+
+    /**
+     * Decodes the patches for a class, which are not kept by the store.
+     */
+    List<ClassPatch> getPatches(String sourceClassName)
+    {
+        List<int[]> entries = index.get(sourceClassName);
+        if (entries.isEmpty())
+        {
+            return ImmutableList.of();
+        }
+        ImmutableList.Builder<ClassPatch> ret = ImmutableList.builder();
+        for (int[] entry : entries)
+        {
+            byte[] bytes = new byte[entry[1]];
+            // Absolute positioning on a private view, the store is shared between threads
+            ByteBuffer view = data.duplicate();
+            view.position(entry[0]);
+            view.get(bytes);
+            ret.add(ClassPatchManager.readPatch(bytes));
+        }
+        return ret.build();
+    }
+
+    @Override
+    public String toString()
+    {
+        return index.keySet().toString();
+    }
+}
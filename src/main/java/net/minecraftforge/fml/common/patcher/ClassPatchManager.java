@@ -1,47 +1,58 @@
 package net.minecraftforge.fml.common.patcher;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
-import java.util.jar.JarOutputStream;
-import java.util.jar.Pack200;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.Level;
 
 import net.minecraft.launchwrapper.LaunchClassLoader;
+import net.minecraftforge.fml.common.asm.transformers.deobf.FMLDeobfuscatingRemapper;
 import net.minecraftforge.fml.relauncher.FMLRelaunchLog;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.repackage.com.nothome.delta.GDiffPatcher;
-import LZMA.LzmaInputStream;
 
-import com.google.common.base.Joiner;
 import com.google.common.base.Throwables;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ListMultimap;
-import com.google.common.collect.Maps;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
 import com.google.common.hash.Hashing;
 import com.google.common.io.ByteArrayDataInput;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class ClassPatchManager {
     public static final ClassPatchManager INSTANCE = new ClassPatchManager();
 
     public static final boolean dumpPatched = Boolean.parseBoolean(System.getProperty("fml.dumpPatchedClasses", "false"));
     public static final boolean DEBUG = Boolean.parseBoolean(System.getProperty("fml.debugClassPatchManager", "false"));
+    // Upper bound for the bytes of patched classes kept around, in KB
+    private static final long CACHE_SIZE = Long.parseLong(System.getProperty("fml.patchedClassCacheSize", "8192")) * 1024;
 
-    private GDiffPatcher patcher = new GDiffPatcher();
-    private ListMultimap<String, ClassPatch> patches;
+    // Patches all targets on background threads at startup, so classes are patched before they are loaded
+    public static final boolean PREWARM = Boolean.parseBoolean(System.getProperty("fml.prewarmPatches", "false"));
+    private static final int PREWARM_THREADS = Integer.parseInt(System.getProperty("fml.prewarmPatches.threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
 
-    private Map<String,byte[]> patchedClasses = Maps.newHashMap();
+    // Reentrant, so classes are patched concurrently on whichever threads load them
+    private final GDiffPatcher patcher = new GDiffPatcher();
+    private BinPatchStore patches;
+
+    /**
+     * Patched classes, so the deobfuscation remapper can read a class and it is only patched once
+     * when it is loaded as well. Bounded by {@link #CACHE_SIZE} and the garbage collector, and
+     * dropped once loading is complete, see {@link #dropCache()}.
+     */
+    private volatile Cache<String, byte[]> patchedClasses = newCache();
     private File tempDir;
     private ClassPatchManager()
     {
@@ -63,11 +74,13 @@ public class ClassPatchManager {
         {
             return inputData;
         }
-        if (patchedClasses.containsKey(name))
+        Cache<String, byte[]> cache = patchedClasses;
+        byte[] cached = cache == null ? null : cache.getIfPresent(name);
+        if (cached != null)
         {
-            return patchedClasses.get(name);
+            return cached;
         }
-        List<ClassPatch> list = patches.get(name);
+        List<ClassPatch> list = patches.getPatches(name);
         if (list.isEmpty())
         {
             return inputData;
@@ -108,17 +121,14 @@ public class ClassPatchManager {
                     }
                 }
             }
-            synchronized (patcher)
+            try
             {
-                try
-                {
-                    inputData = patcher.patch(inputData, patch.patch);
-                }
-                catch (IOException e)
-                {
-                    FMLRelaunchLog.log(Level.ERROR, e, "Encountered problem runtime patching class %s", name);
-                    continue;
-                }
+                inputData = patcher.patch(inputData, patch.patch);
+            }
+            catch (IOException e)
+            {
+                FMLRelaunchLog.log(Level.ERROR, e, "Encountered problem runtime patching class %s", name);
+                continue;
             }
         }
         if (!ignoredError && DEBUG)
@@ -136,83 +146,166 @@ public class ClassPatchManager {
                 FMLRelaunchLog.log(Level.ERROR, e, "Failed to write %s to %s", mappedName, tempDir.getAbsolutePath());
             }
         }
-        patchedClasses.put(name,inputData);
+        if (cache != null)
+        {
+            cache.put(name, inputData);
+        }
         return inputData;
     }
 
     public void setup(Side side)
     {
-        Pattern binpatchMatcher = Pattern.compile(String.format("binpatch/%s/.*.binpatch", side.toString().toLowerCase(Locale.ENGLISH)));
-        JarInputStream jis;
+        setup(side, null);
+    }
+
+    /**
+     * Loads the binary patches for the side.
+     *
+     * @param cacheDir Directory to keep the unpacked patches in between launches, see {@link BinPatchStore}
+     */
+    public void setup(Side side, File cacheDir)
+    {
         try
         {
-            InputStream binpatchesCompressed = getClass().getResourceAsStream("/binpatches.pack.lzma");
-            if (binpatchesCompressed==null)
-            {
-                FMLRelaunchLog.log(Level.ERROR, "The binary patch set is missing. Either you are in a development environment, or things are not going to work!");
-                return;
-            }
-            LzmaInputStream binpatchesDecompressed = new LzmaInputStream(binpatchesCompressed);
-            ByteArrayOutputStream jarBytes = new ByteArrayOutputStream();
-            JarOutputStream jos = new JarOutputStream(jarBytes);
-            Pack200.newUnpacker().unpack(binpatchesDecompressed, jos);
-            jis = new JarInputStream(new ByteArrayInputStream(jarBytes.toByteArray()));
+            patches = BinPatchStore.load(side, cacheDir);
         }
         catch (Exception e)
         {
             FMLRelaunchLog.log(Level.ERROR, e, "Error occurred reading binary patches. Expect severe problems!");
             throw Throwables.propagate(e);
         }
+        if (patches == null)
+        {
+            FMLRelaunchLog.log(Level.ERROR, "The binary patch set is missing. Either you are in a development environment, or things are not going to work!");
+            return;
+        }
 
-        patches = ArrayListMultimap.create();
+        FMLRelaunchLog.fine("Read %d binary patches", patches.size());
+        if (DEBUG)
+            FMLRelaunchLog.fine("Patch list :\n\t%s", patches);
+        if (patchedClasses != null)
+        {
+            patchedClasses.invalidateAll();
+        }
+    }
 
-        do
+    /**
+     * Patches the classes with binary patches on a pool of daemon threads, filling the patched class
+     * cache ahead of the game. Returns immediately, classes requested before their turn are simply
+     * patched by the thread loading them.
+     *
+     * Stops once the patched classes fill half of the cache, as more would only evict each other and
+     * the classes loaded meanwhile. Call it once the deobfuscation remapper is set up, it names the
+     * patched classes.
+     */
+    public void prewarm(final LaunchClassLoader loader)
+    {
+        if (patches == null || patchedClasses == null)
         {
-            try
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, PREWARM_THREADS),
+                new ThreadFactoryBuilder().setNameFormat("FML Patch Prewarm #%d").setDaemon(true).build());
+        final Set<String> names = patches.getClassNames();
+        final AtomicInteger remaining = new AtomicInteger(names.size());
+        final AtomicInteger prewarmed = new AtomicInteger();
+        final AtomicLong size = new AtomicLong();
+        final long start = System.nanoTime();
+        for (final String name : names)
+        {
+            executor.execute(new Runnable()
             {
-                JarEntry entry = jis.getNextJarEntry();
-                if (entry == null)
+                @Override
+                public void run()
                 {
-                    break;
-                }
-                if (binpatchMatcher.matcher(entry.getName()).matches())
-                {
-                    ClassPatch cp = readPatch(entry, jis);
-                    if (cp != null)
+                    try
                     {
-                        patches.put(cp.sourceClassName, cp);
+                        Cache<String, byte[]> cache = patchedClasses;
+                        if (cache != null && size.get() < CACHE_SIZE / 2 && cache.getIfPresent(name) == null)
+                        {
+                            String mappedName = FMLDeobfuscatingRemapper.INSTANCE.map(name.replace('.', '/')).replace('/', '.');
+                            byte[] patched = getPatchedResource(name, mappedName, loader);
+                            if (patched != null)
+                            {
+                                size.addAndGet(patched.length);
+                                prewarmed.incrementAndGet();
+                            }
+                        }
+                    }
+                    catch (Exception e)
+                    {
+                        // Retried, and reported, when the class is actually loaded
+                        if (DEBUG)
+                            FMLRelaunchLog.log(Level.DEBUG, e, "Unable to prewarm the patched class %s", name);
+                    }
+                    if (remaining.decrementAndGet() == 0)
+                    {
+                        FMLRelaunchLog.fine("Prewarmed %d of %d patched classes (%d KB) in %d ms", prewarmed.get(), names.size(),
+                                size.get() / 1024, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
                     }
                 }
-                else
+            });
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * @return The SHA-1 of the binary patch archive, or null if there are no binary patches
+     */
+    public static HashCode getPatchArchiveHash() throws IOException
+    {
+        return BinPatchStore.archiveHash();
+    }
+
+    /**
+     * The names of the classes with binary patches, before they are patched.
+     */
+    public Set<String> getPatchedClasses()
+    {
+        return patches == null ? ImmutableSet.<String>of() : patches.getClassNames();
+    }
+
+    private static Cache<String, byte[]> newCache()
+    {
+        return CacheBuilder.newBuilder()
+                .maximumWeight(CACHE_SIZE)
+                .weigher(new Weigher<String, byte[]>()
                 {
-                    jis.closeEntry();
-                }
-            }
-            catch (IOException e)
-            {
-            }
-        } while (true);
-        FMLRelaunchLog.fine("Read %d binary patches", patches.size());
-        if (DEBUG)
-            FMLRelaunchLog.fine("Patch list :\n\t%s", Joiner.on("\t\n").join(patches.asMap().entrySet()));
-        patchedClasses.clear();
+                    @Override
+                    public int weigh(String key, byte[] value)
+                    {
+                        return value.length;
+                    }
+                })
+                .softValues()
+                .recordStats()
+                .build();
     }
 
-    private ClassPatch readPatch(JarEntry patchEntry, JarInputStream jis)
+    /**
+     * Drops the patched class cache for good, once the classes that needed it are defined.
+     * Classes loaded later are patched without being cached.
+     */
+    public void dropCache()
     {
-        if (DEBUG)
-            FMLRelaunchLog.finer("Reading patch data from %s", patchEntry.getName());
-        ByteArrayDataInput input;
-        try
-        {
-            input = ByteStreams.newDataInput(ByteStreams.toByteArray(jis));
-        }
-        catch (IOException e)
+        Cache<String, byte[]> cache = patchedClasses;
+        if (cache == null)
         {
-            FMLRelaunchLog.log(Level.WARN, e, "Unable to read binpatch file %s - ignoring", patchEntry.getName());
-            return null;
+            return;
         }
+        patchedClasses = null;
+        CacheStats stats = cache.stats();
+        FMLRelaunchLog.fine("Dropping the patched class cache: %d hits, %d misses, %d evictions, %d classes cached",
+                stats.hitCount(), stats.missCount(), stats.evictionCount(), cache.size());
+        cache.invalidateAll();
+    }
+
+    static ClassPatch readPatch(byte[] patchData)
+    {
+        ByteArrayDataInput input = ByteStreams.newDataInput(patchData);
         String name = input.readUTF();
+        if (DEBUG)
+            FMLRelaunchLog.finer("Reading patch data for %s", name);
         String sourceClassName = input.readUTF();
         String targetClassName = input.readUTF();
         boolean exists = input.readBoolean();
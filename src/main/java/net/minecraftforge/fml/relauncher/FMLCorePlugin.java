@@ -14,18 +14,19 @@ package net.minecraftforge.fml.relauncher;
 
 import java.util.Map;
 
+import net.minecraftforge.fml.common.asm.transformers.FMLTransformerHost;
+import net.minecraftforge.fml.common.asm.transformers.TransformerHost;
+
 public class FMLCorePlugin implements IFMLLoadingPlugin
 {
     @Override
     public String[] getASMTransformerClass()
     {
-        return new String[] {
-                             "net.minecraftforge.fml.common.asm.transformers.BlamingTransformer",
-                             "net.minecraftforge.fml.common.asm.transformers.MarkerTransformer",
-                             "net.minecraftforge.fml.common.asm.transformers.SideTransformer",
-                             "net.minecraftforge.fml.common.asm.transformers.EventSubscriptionTransformer",
-                             "net.minecraftforge.fml.common.asm.transformers.EventSubscriberTransformer",
-                            };
+        if (TransformerHost.ENABLED)
+        {
+            return new String[] { FMLTransformerHost.BLAMING_TRANSFORMER, "net.minecraftforge.fml.common.asm.transformers.FMLTransformerHost" };
+        }
+        return FMLTransformerHost.TRANSFORMERS.toArray(new String[0]);
     }
 
     @Override
@@ -57,12 +57,11 @@ import java.nio.ByteBuffer;
  * The patch file follows the GDIFF file specification available at
  *
  * <a href="http://www.w3.org/TR/NOTE-gdiff-19970901.html">http://www.w3.org/TR/NOTE-gdiff-19970901.html</a>.
+ *
+ * Patchers hold no state between calls, so one instance can be used from several threads at once.
  */
 public class GDiffPatcher {
 
-    private ByteBuffer buf = ByteBuffer.allocate(1024);
-    private byte buf2[] = buf.array();
-
     /**
      * Constructs a new GDiffPatcher.
      */
@@ -110,6 +109,7 @@ public class GDiffPatcher {
      */
     public void patch(SeekableSource source, InputStream patch, OutputStream out) throws IOException {
 
+        ByteBuffer buf = ByteBuffer.allocate(1024);
         DataOutputStream outOS = new DataOutputStream(out);
         DataInputStream patchIS = new DataInputStream(patch);
 
@@ -131,53 +131,53 @@ public class GDiffPatcher {
             int offset;
 
             if (command <= DATA_MAX) {
-                append(command, patchIS, outOS);
+                append(command, patchIS, outOS, buf);
                 continue;
             }
 
             switch (command) {
             case DATA_USHORT: // ushort, n bytes following; append
                 length = patchIS.readUnsignedShort();
-                append(length, patchIS, outOS);
+                append(length, patchIS, outOS, buf);
                 break;
             case DATA_INT: // int, n bytes following; append
                 length = patchIS.readInt();
-                append(length, patchIS, outOS);
+                append(length, patchIS, outOS, buf);
                 break;
             case COPY_USHORT_UBYTE:
                 offset = patchIS.readUnsignedShort();
                 length = patchIS.readUnsignedByte();
-                copy(offset, length, source, outOS);
+                copy(offset, length, source, outOS, buf);
                 break;
             case COPY_USHORT_USHORT:
                 offset = patchIS.readUnsignedShort();
                 length = patchIS.readUnsignedShort();
-                copy(offset, length, source, outOS);
+                copy(offset, length, source, outOS, buf);
                 break;
             case COPY_USHORT_INT:
                 offset = patchIS.readUnsignedShort();
                 length = patchIS.readInt();
-                copy(offset, length, source, outOS);
+                copy(offset, length, source, outOS, buf);
                 break;
             case COPY_INT_UBYTE:
                 offset = patchIS.readInt();
                 length = patchIS.readUnsignedByte();
-                copy(offset, length, source, outOS);
+                copy(offset, length, source, outOS, buf);
                 break;
             case COPY_INT_USHORT:
                 offset = patchIS.readInt();
                 length = patchIS.readUnsignedShort();
-                copy(offset, length, source, outOS);
+                copy(offset, length, source, outOS, buf);
                 break;
             case COPY_INT_INT:
                 offset = patchIS.readInt();
                 length = patchIS.readInt();
-                copy(offset, length, source, outOS);
+                copy(offset, length, source, outOS, buf);
                 break;
             case COPY_LONG_INT:
                 long loffset = patchIS.readLong();
                 length = patchIS.readInt();
-                copy(loffset, length, source, outOS);
+                copy(loffset, length, source, outOS, buf);
                 break;
             default:
                 throw new IllegalStateException("command " + command);
@@ -186,7 +186,7 @@ public class GDiffPatcher {
 		outOS.flush();
     }
 
-    private void copy(long offset, int length, SeekableSource source, OutputStream output)
+    private void copy(long offset, int length, SeekableSource source, OutputStream output, ByteBuffer buf)
 		throws IOException
 	{
         source.seek(offset);
@@ -201,7 +201,8 @@ public class GDiffPatcher {
         }
     }
 
-    private void append(int length, InputStream patch, OutputStream output) throws IOException {
+    private void append(int length, InputStream patch, OutputStream output, ByteBuffer buf) throws IOException {
+        byte buf2[] = buf.array();
         while (length > 0) {
             int len = Math.min(buf2.length, length);
     	    int res = patch.read(buf2, 0, len);
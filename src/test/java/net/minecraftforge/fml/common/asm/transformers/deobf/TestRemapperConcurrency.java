@@ -0,0 +1,236 @@
+package net.minecraftforge.fml.common.asm.transformers.deobf;
+
+import static org.junit.Assert.*;
+import static org.objectweb.asm.Opcodes.*;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.minecraft.launchwrapper.LaunchClassLoader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.CharSource;
+
+/**
+ * Remaps a generated class hierarchy from many threads at once, and checks every answer against
+ * the same lookups made on a single thread.
+ */
+public class TestRemapperConcurrency
+{
+    private static final int CLASSES = 400;
+    private static final int MODS = 200;
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 5;
+    private static final String[] METHODS = { "a", "b", "c", "d" };
+    private static final String[] DESCS = { "()V", "(I)V" };
+    private static final String[] FIELDS = { "e", "f" };
+
+    private final Map<String, byte[]> classes = Maps.newHashMap();
+    private final List<String[]> queries = Lists.newArrayList();
+    private String srg;
+    private LaunchClassLoader loader;
+
+    private static class GeneratedClassLoader extends LaunchClassLoader
+    {
+        private final Map<String, byte[]> classes;
+
+        GeneratedClassLoader(Map<String, byte[]> classes)
+        {
+            super(new URL[0]);
+            this.classes = classes;
+        }
+
+        @Override
+        public byte[] getClassBytes(String name)
+        {
+            return classes.get(name.replace('.', '/'));
+        }
+    }
+
+    @Before
+    public void generate()
+    {
+        Random rand = new Random(42);
+        StringBuilder out = new StringBuilder("PK: . net/minecraft\n");
+        List<String> owners = Lists.newArrayList();
+        for (int i = 0; i < CLASSES; i++)
+        {
+            // A forest of shallow trees, so parents are shared and merged maps differ by class
+            String name = "c" + i;
+            String superName = i % 20 == 0 ? "java/lang/Object" : "c" + (i - 1 - rand.nextInt(Math.min(i % 20, 5)));
+            String[] interfaces = i % 7 == 3 ? new String[] { "c" + (i - 3) + "$i" } : new String[0];
+            ClassWriter cw = new ClassWriter(0);
+            cw.visit(V1_6, ACC_PUBLIC | ACC_ABSTRACT, name, null, superName, interfaces);
+            out.append("CL: ").append(name).append(" net/minecraft/C").append(i).append('\n');
+            for (String field : FIELDS)
+            {
+                if (rand.nextBoolean())
+                {
+                    cw.visitField(ACC_PUBLIC, field, "I", null, null).visitEnd();
+                    out.append("FD: ").append(name).append('/').append(field).append(" net/minecraft/C").append(i).append("/field_").append(i).append('_').append(field).append('\n');
+                }
+            }
+            for (String method : METHODS)
+            {
+                for (String desc : DESCS)
+                {
+                    if (rand.nextInt(3) == 0)
+                    {
+                        cw.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, method, desc, null, null).visitEnd();
+                        out.append("MD: ").append(name).append('/').append(method).append(' ').append(desc)
+                           .append(" net/minecraft/C").append(i).append("/func_").append(i).append('_').append(method).append(' ').append(desc).append('\n');
+                    }
+                }
+            }
+            cw.visitEnd();
+            classes.put(name, cw.toByteArray());
+            owners.add(name);
+
+            ClassWriter iw = new ClassWriter(0);
+            iw.visit(V1_6, ACC_PUBLIC | ACC_ABSTRACT | ACC_INTERFACE, name + "$i", null, "java/lang/Object", null);
+            iw.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, "d", "()V", null, null).visitEnd();
+            iw.visitEnd();
+            classes.put(name + "$i", iw.toByteArray());
+            out.append("MD: ").append(name).append("$i/d ()V net/minecraft/C").append(i).append("$i/func_i").append(i).append("_d ()V\n");
+        }
+        for (int i = 0; i < MODS; i++)
+        {
+            // Unmapped classes extending mapped ones, as mods do
+            String name = "mod/M" + i;
+            ClassWriter cw = new ClassWriter(0);
+            cw.visit(V1_6, ACC_PUBLIC, name, null, "c" + rand.nextInt(CLASSES), null);
+            cw.visitEnd();
+            classes.put(name, cw.toByteArray());
+            owners.add(name);
+        }
+        srg = out.toString();
+
+        for (String owner : owners)
+        {
+            queries.add(new String[] { "class", owner, null, null });
+            queries.add(new String[] { "class", owner + "$1", null, null });
+            for (String method : METHODS)
+            {
+                for (String desc : DESCS)
+                {
+                    queries.add(new String[] { "method", owner, method, desc });
+                }
+            }
+            queries.add(new String[] { "method", owner, "zz", "()V" });
+            for (String field : FIELDS)
+            {
+                queries.add(new String[] { "field", owner, field, "I" });
+                queries.add(new String[] { "field", owner, field, null });
+            }
+        }
+        loader = new GeneratedClassLoader(classes);
+    }
+
+    @After
+    public void reset() throws Exception
+    {
+        FMLDeobfuscatingRemapper.INSTANCE.setup(CharSource.wrap(""), null);
+    }
+
+    private static String query(FMLDeobfuscatingRemapper remapper, String[] query)
+    {
+        if (query[0].equals("class"))
+        {
+            String mapped = remapper.map(query[1]);
+            return mapped + " " + remapper.unmap(mapped);
+        }
+        if (query[0].equals("method"))
+        {
+            return remapper.mapMethodName(query[1], query[2], query[3]);
+        }
+        return remapper.mapFieldName(query[1], query[2], query[3]);
+    }
+
+    @Test
+    public void testConcurrentRemapping() throws Exception
+    {
+        final FMLDeobfuscatingRemapper remapper = FMLDeobfuscatingRemapper.INSTANCE;
+        remapper.setup(CharSource.wrap(srg), loader);
+        final String[] expected = new String[queries.size()];
+        for (int i = 0; i < expected.length; i++)
+        {
+            expected[i] = query(remapper, queries.get(i));
+        }
+        assertEquals("c1$1 maps to its outer class", "net/minecraft/C1$1 c1$1", query(remapper, new String[] { "class", "c1$1", null, null }));
+        assertEquals("unmapped names are kept", "zz", query(remapper, new String[] { "method", "mod/M0", "zz", "()V" }));
+        int inherited = 0;
+        for (int i = 0; i < expected.length; i++)
+        {
+            String[] query = queries.get(i);
+            if (query[1].startsWith("mod/") && !query[0].equals("class") && !expected[i].equals(query[2]))
+            {
+                inherited++;
+            }
+        }
+        assertTrue("mod classes inherit mapped members", inherited > MODS);
+
+        for (int round = 0; round < ROUNDS; round++)
+        {
+            remapper.setup(CharSource.wrap(srg), loader);
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            List<Thread> threads = Lists.newArrayList();
+            for (int t = 0; t < THREADS; t++)
+            {
+                // Every thread makes every lookup, in its own order, so they race on the same classes
+                final List<Integer> order = Lists.newArrayListWithCapacity(expected.length);
+                for (int i = 0; i < expected.length; i++)
+                {
+                    order.add(i);
+                }
+                Collections.shuffle(order, new Random(round * THREADS + t));
+                Thread thread = new Thread("Remapper test #" + t)
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            start.await();
+                            for (int i : order)
+                            {
+                                String result = query(remapper, queries.get(i));
+                                if (!expected[i].equals(result))
+                                {
+                                    throw new AssertionError("Lookup " + Arrays.toString(queries.get(i)) + " gave " + result + ", expected " + expected[i]);
+                                }
+                            }
+                        }
+                        catch (Throwable e)
+                        {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                };
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads)
+            {
+                thread.join();
+            }
+            if (failure.get() != null)
+            {
+                throw new AssertionError("Round " + round + " failed: " + failure.get());
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package net.minecraftforge.fml.common.discovery.asm;
+
+import static org.junit.Assert.*;
+import static org.objectweb.asm.Opcodes.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.TypeReference;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+
+/**
+ * Parses generated classes, with and without the annotation pre-scan, and through the discovery cache
+ * format.
+ */
+public class TestASMModParser
+{
+    private final List<byte[]> classes = Lists.newArrayList();
+
+    @Before
+    public void generate()
+    {
+        classes.add(plain());
+        classes.add(decoy());
+        classes.add(annotationType());
+        classes.add(annotated());
+        classes.add(invisible());
+        classes.add(parameterOnly());
+        classes.add(typeOnly());
+    }
+
+    private static byte[] plain()
+    {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_6, ACC_PUBLIC, "test/Plain", null, "java/lang/Object", null);
+        cw.visitField(ACC_PRIVATE, "value", "I", null, null).visitEnd();
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * No annotations, but the name of the attribute as a string constant, which the pre-scan can't tell apart.
+     */
+    private static byte[] decoy()
+    {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_6, ACC_PUBLIC, "test/Decoy", null, "test/Plain", null);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "name", "()Ljava/lang/String;", null, null);
+        mv.visitCode();
+        mv.visitLdcInsn("RuntimeVisibleAnnotations");
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static byte[] annotationType()
+    {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_6, ACC_PUBLIC | ACC_ABSTRACT | ACC_INTERFACE | ACC_ANNOTATION, "test/Outer", null, "java/lang/Object", new String[] { "java/lang/annotation/Annotation" });
+        AnnotationVisitor av = cw.visitAnnotation("Ljava/lang/annotation/Retention;", true);
+        av.visitEnum("value", "Ljava/lang/annotation/RetentionPolicy;", "RUNTIME");
+        av.visitEnd();
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, "name", "()Ljava/lang/String;", null, null);
+        av = mv.visitAnnotationDefault();
+        av.visit(null, "default");
+        av.visitEnd();
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void fill(AnnotationVisitor av)
+    {
+        av.visit("name", "x");
+        av.visit("ints", new int[] { 1, 2, 3 });
+        av.visit("bytes", new byte[] { 4, 5 });
+        av.visit("type", Type.getType("Ljava/lang/String;"));
+        av.visit("l", 5L);
+        av.visit("c", 'q');
+        av.visit("d", 2.5D);
+        av.visit("f", 1.5F);
+        av.visit("s", (short)7);
+        av.visit("b", (byte)8);
+        av.visit("z", true);
+        av.visitEnum("e", "Ljava/lang/annotation/ElementType;", "FIELD");
+        AnnotationVisitor array = av.visitArray("enums");
+        array.visitEnum(null, "Ljava/lang/annotation/ElementType;", "FIELD");
+        array.visitEnum(null, "Ljava/lang/annotation/ElementType;", "METHOD");
+        array.visitEnd();
+        array = av.visitArray("strings");
+        array.visit(null, "a");
+        array.visit(null, "b");
+        array.visitEnd();
+        array = av.visitArray("empty");
+        array.visitEnd();
+        array = av.visitArray("inners");
+        AnnotationVisitor inner = array.visitAnnotation(null, "Ltest/Inner;");
+        inner.visit("v", "a");
+        inner.visitEnd();
+        inner = array.visitAnnotation(null, "Ltest/Inner;");
+        inner.visit("v", "b");
+        inner.visitEnum("e", "Ljava/lang/annotation/ElementType;", "TYPE");
+        inner.visitEnd();
+        array.visitEnd();
+        inner = av.visitAnnotation("one", "Ltest/Inner;");
+        inner.visit("v", "solo");
+        inner.visitEnd();
+        av.visitEnd();
+    }
+
+    private static byte[] annotated()
+    {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_6, ACC_PUBLIC, "test/Annotated", null, "test/Plain", null);
+        fill(cw.visitAnnotation("Ltest/Outer;", true));
+        AnnotationVisitor av = cw.visitAnnotation("Lnet/minecraftforge/fml/common/Mod;", true);
+        av.visit("modid", "test");
+        av.visitEnd();
+        FieldVisitor fv = cw.visitField(ACC_PUBLIC, "field", "I", null, null);
+        av = fv.visitAnnotation("Ltest/Inner;", true);
+        av.visit("v", "f");
+        av.visitEnd();
+        fv.visitEnd();
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, "method", "(Ljava/lang/String;)V", null, null);
+        fill(mv.visitAnnotation("Ltest/Outer;", true));
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static byte[] invisible()
+    {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_6, ACC_PUBLIC, "test/Invisible", null, "java/lang/Object", null);
+        AnnotationVisitor av = cw.visitAnnotation("Ltest/Inner;", false);
+        av.visit("v", "invisible");
+        av.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static byte[] parameterOnly()
+    {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_6, ACC_PUBLIC, "test/ParameterOnly", null, "java/lang/Object", null);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, "method", "(I)V", null, null);
+        mv.visitParameterAnnotation(0, "Ltest/Inner;", true).visitEnd();
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static byte[] typeOnly()
+    {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_8, ACC_PUBLIC, "test/TypeOnly", null, "java/lang/Object", null);
+        FieldVisitor fv = cw.visitField(ACC_PUBLIC, "field", "Ljava/lang/String;", null, null);
+        fv.visitTypeAnnotation(TypeReference.newTypeReference(TypeReference.FIELD).getValue(), null, "Ltest/Inner;", true).visitEnd();
+        fv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Everything the parser hands to discovery, with maps shared between annotations shown as references.
+     */
+    private static String describe(ASMModParser parser)
+    {
+        StringBuilder ret = new StringBuilder();
+        ret.append(parser.getASMType()).append(' ').append(parser.getClassVersion()).append(' ').append(parser.getASMSuperType())
+           .append(' ').append(parser.getBaseModProperties()).append('\n');
+        IdentityHashMap<Object, Integer> seen = new IdentityHashMap<Object, Integer>();
+        for (ModAnnotation ann : parser.getAnnotations())
+        {
+            ret.append(ann.getType()).append(' ').append(ann.getASMType()).append(' ').append(ann.getMember()).append(' ');
+            describe(ret, ann.getValues(), seen);
+            ret.append('\n');
+        }
+        return ret.toString();
+    }
+
+    private static void describe(StringBuilder ret, Object value, IdentityHashMap<Object, Integer> seen)
+    {
+        if (value instanceof Map)
+        {
+            Integer id = seen.get(value);
+            if (id != null)
+            {
+                ret.append('#').append(id);
+                return;
+            }
+            seen.put(value, seen.size());
+            ret.append('{');
+            List<String> keys = Lists.newArrayList();
+            for (Object key : ((Map<?, ?>)value).keySet())
+            {
+                keys.add((String)key);
+            }
+            Collections.sort(keys, Ordering.natural().nullsFirst());
+            for (String key : keys)
+            {
+                ret.append(key).append('=');
+                describe(ret, ((Map<?, ?>)value).get(key), seen);
+                ret.append(';');
+            }
+            ret.append('}');
+        }
+        else if (value instanceof List)
+        {
+            ret.append('[');
+            for (Object element : (List<?>)value)
+            {
+                describe(ret, element, seen);
+                ret.append(',');
+            }
+            ret.append(']');
+        }
+        else if (value != null && value.getClass().isArray())
+        {
+            ret.append(value.getClass().getComponentType()).append('[');
+            for (int i = 0; i < Array.getLength(value); i++)
+            {
+                ret.append(Array.get(value, i)).append(',');
+            }
+            ret.append(']');
+        }
+        else if (value instanceof ModAnnotation.EnumHolder)
+        {
+            ModAnnotation.EnumHolder holder = (ModAnnotation.EnumHolder)value;
+            ret.append("enum ").append(holder.getDesc()).append(' ').append(holder.getValue());
+        }
+        else
+        {
+            ret.append(value == null ? "null" : value.getClass().getSimpleName() + ' ' + value);
+        }
+    }
+
+    @Test
+    public void testPreScanMatchesFullParse() throws IOException
+    {
+        int annotated = 0;
+        for (byte[] data : classes)
+        {
+            ASMModParser full = new ASMModParser(new ByteArrayInputStream(data), false);
+            ASMModParser scanned = new ASMModParser(new ByteArrayInputStream(data), true);
+            assertEquals("pre-scanned " + full.getASMType(), describe(full), describe(scanned));
+            if (!full.getAnnotations().isEmpty())
+            {
+                annotated++;
+            }
+        }
+        // Annotated, Outer and Invisible, the others only have annotations discovery ignores, or none
+        assertEquals("annotated classes", 3, annotated);
+    }
+
+    @Test
+    public void testCacheRoundTrip() throws IOException
+    {
+        List<ASMModParser> parsers = Lists.newArrayList();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (byte[] data : classes)
+        {
+            ASMModParser parser = new ASMModParser(new ByteArrayInputStream(data));
+            parsers.add(parser);
+            parser.write(out);
+        }
+        out.close();
+
+        // Read back one after the other from the same stream, as the discovery cache does
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (ASMModParser parser : parsers)
+        {
+            ASMModParser read = ASMModParser.read(in);
+            assertEquals("read back " + parser.getASMType(), describe(parser), describe(read));
+        }
+        assertEquals("stream fully read", -1, in.read());
+    }
+}
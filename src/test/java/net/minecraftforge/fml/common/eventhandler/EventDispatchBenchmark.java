@@ -0,0 +1,136 @@
+package net.minecraftforge.fml.common.eventhandler;
+
+import java.util.Arrays;
+
+/**
+ * Times {@link EventBus#post(Event)} for a range of listener counts. The dispatch mode is read once
+ * when the bus is loaded, so compare two runs:
+ *
+ * <pre>
+ * java -Dfml.compileEventDispatch=false -cp ... net.minecraftforge.fml.common.eventhandler.EventDispatchBenchmark
+ * java -Dfml.compileEventDispatch=true -cp ... net.minecraftforge.fml.common.eventhandler.EventDispatchBenchmark
+ * </pre>
+ *
+ * Every bus holds listeners of three priorities, so the lists carry phase markers, and one in eight
+ * events is canceled by the first listener, so the cancellation checks are taken both ways. Each post
+ * creates its event, which is the same work in both modes.
+ */
+public class EventDispatchBenchmark
+{
+    private static final int[] LISTENERS = { 1, 4, 16, 64 };
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int ROUNDS = 15;
+    private static final int POSTS = 200000;
+
+    public static class BenchEvent extends Event
+    {
+        private static ListenerList LISTENER_LIST;
+        int calls;
+        final boolean cancel;
+
+        public BenchEvent()
+        {
+            this(false);
+        }
+
+        public BenchEvent(boolean cancel)
+        {
+            this.cancel = cancel;
+        }
+
+        @Override
+        protected void setup()
+        {
+            super.setup();
+            if (LISTENER_LIST == null)
+            {
+                LISTENER_LIST = new ListenerList(super.getListenerList(), BenchEvent.class);
+            }
+        }
+
+        @Override
+        public ListenerList getListenerList()
+        {
+            return LISTENER_LIST;
+        }
+
+        @Override
+        public boolean isCancelable()
+        {
+            return true;
+        }
+    }
+
+    public static class HighListener
+    {
+        @SubscribeEvent(priority = EventPriority.HIGH)
+        public void onEvent(BenchEvent event)
+        {
+            event.calls++;
+            if (event.cancel)
+            {
+                event.setCanceled(true);
+            }
+        }
+    }
+
+    public static class NormalListener
+    {
+        @SubscribeEvent
+        public void onEvent(BenchEvent event)
+        {
+            event.calls++;
+        }
+    }
+
+    public static class LowListener
+    {
+        @SubscribeEvent(priority = EventPriority.LOW, receiveCanceled = true)
+        public void onEvent(BenchEvent event)
+        {
+            event.calls++;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        System.out.printf("fml.compileEventDispatch=%s, %d rounds of %d posts after %d warmup rounds%n", ASMEventDispatcher.ENABLED, ROUNDS, POSTS, WARMUP_ROUNDS);
+        long check = 0;
+        for (int count : LISTENERS)
+        {
+            EventBus bus = new EventBus();
+            bus.register(new HighListener());
+            for (int i = 2; i < count; i++)
+            {
+                bus.register(new NormalListener());
+            }
+            if (count > 1)
+            {
+                bus.register(new LowListener());
+            }
+            long[] times = new long[ROUNDS];
+            for (int round = -WARMUP_ROUNDS; round < ROUNDS; round++)
+            {
+                long start = System.nanoTime();
+                for (int i = 0; i < POSTS; i++)
+                {
+                    // Events only go through the bus once, so every post creates one, as the game does
+                    BenchEvent event = new BenchEvent((i & 7) == 0);
+                    if (bus.post(event))
+                    {
+                        check++;
+                    }
+                    check += event.calls;
+                }
+                long time = System.nanoTime() - start;
+                if (round >= 0)
+                {
+                    times[round] = time;
+                }
+            }
+            Arrays.sort(times);
+            System.out.printf("%3d listeners: median %6.1f ns/post, min %6.1f ns/post%n", count, (double)times[ROUNDS / 2] / POSTS, (double)times[0] / POSTS);
+        }
+        System.out.println("check " + check);
+    }
+}